@@ -0,0 +1,87 @@
+package org.vatplanner.importer.postgis.status.benchmarks;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.vatplanner.importer.postgis.status.database.DeduplicationCache;
+import org.vatplanner.importer.postgis.status.database.PreparedStatementCache;
+
+/**
+ * Measures {@link DeduplicationCache#getId(String)} for values already held by
+ * the cache and for values requiring a lookup, either individually or resolved
+ * in bulk by {@link DeduplicationCache#resolve(java.util.Collection)} first.
+ * Database access is replaced by {@link FakeJdbc}, so only client-side overhead
+ * is measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DeduplicationCacheBenchmark {
+
+    @Param({ "1000" })
+    private int numValues;
+
+    private final FakeJdbc jdbc = new FakeJdbc();
+    private String[] values;
+    private DeduplicationCache warmCache;
+
+    @Setup
+    public void setUp() throws SQLException {
+        values = new String[numValues];
+        for (int i = 0; i < numValues; i++) {
+            values[i] = "http://synthetic-" + i + ".example.com/vatsim-data.txt";
+        }
+
+        warmCache = createCache();
+        for (String value : values) {
+            warmCache.getId(value);
+        }
+    }
+
+    private DeduplicationCache createCache() throws SQLException {
+        DeduplicationCache cache = new DeduplicationCache("fetchurls", "fetchurl_id", "url", "text");
+        cache.begin(new PreparedStatementCache(jdbc.createConnection()));
+
+        return cache;
+    }
+
+    @Benchmark
+    public void cached(Blackhole blackhole) throws SQLException {
+        for (String value : values) {
+            blackhole.consume(warmCache.getId(value));
+        }
+    }
+
+    @Benchmark
+    public void uncached(Blackhole blackhole) throws SQLException {
+        DeduplicationCache cache = createCache();
+        for (String value : values) {
+            blackhole.consume(cache.getId(value));
+        }
+    }
+
+    @Benchmark
+    public void uncachedResolved(Blackhole blackhole) throws SQLException {
+        DeduplicationCache cache = createCache();
+        cache.resolve(Arrays.asList(values));
+        for (String value : values) {
+            blackhole.consume(cache.getId(value));
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package org.vatplanner.importer.postgis.status.benchmarks;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.vatplanner.importer.postgis.status.DirtyEntityTracker;
+import org.vatplanner.importer.postgis.status.entities.RelationalReport;
+import org.vatplanner.importer.postgis.status.entities.RelationalTrackPoint;
+
+/**
+ * Measures basic operations of {@link DirtyEntityTracker} on a set of track
+ * points. Each operation is applied to all entities.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DirtyEntityTrackerBenchmark {
+
+    @Param({ "10000", "100000" })
+    private int numEntities;
+
+    private DirtyEntityTracker tracker;
+    private final List<RelationalTrackPoint> trackPoints = new ArrayList<>();
+
+    @Setup
+    public void setUp() {
+        tracker = new DirtyEntityTracker();
+
+        RelationalReport report = new RelationalReport(tracker, Instant.now());
+        for (int i = 0; i < numEntities; i++) {
+            trackPoints.add(new RelationalTrackPoint(tracker, report));
+        }
+    }
+
+    @Benchmark
+    public int markCleanAndDirty() {
+        for (RelationalTrackPoint trackPoint : trackPoints) {
+            trackPoint.markClean();
+        }
+
+        for (RelationalTrackPoint trackPoint : trackPoints) {
+            trackPoint.markDirty();
+        }
+
+        return tracker.countDirtyEntities();
+    }
+
+    @Benchmark
+    public int markDirtyRepeatedly() {
+        for (RelationalTrackPoint trackPoint : trackPoints) {
+            trackPoint.markDirty();
+        }
+
+        return tracker.countDirtyEntities();
+    }
+
+    @Benchmark
+    public int isDirty() {
+        int numDirty = 0;
+        for (RelationalTrackPoint trackPoint : trackPoints) {
+            if (trackPoint.isDirty()) {
+                numDirty++;
+            }
+        }
+
+        return numDirty;
+    }
+
+    @Benchmark
+    public int drainAndRelist() {
+        int numDrained = 0;
+        for (RelationalTrackPoint trackPoint : tracker.drain(RelationalTrackPoint.class)) {
+            // mark clean as staging does, then dirty again to be listed for next drain
+            trackPoint.markClean();
+            trackPoint.markDirty();
+            numDrained++;
+        }
+
+        return numDrained;
+    }
+}
@@ -0,0 +1,143 @@
+package org.vatplanner.importer.postgis.status.benchmarks;
+
+import java.lang.reflect.Proxy;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal in-memory stand-in for JDBC objects, allowing code paths which
+ * usually query the database to be measured without network or server
+ * overhead. Every query yields a single row holding a new, unique integer. If an
+ * array has been bound, the query instead yields one row per array element,
+ * holding a new integer followed by the element.
+ */
+public class FakeJdbc {
+
+    private final AtomicInteger nextId = new AtomicInteger(1);
+
+    /**
+     * Creates a connection whose statements return a single row holding a new
+     * integer for every query.
+     *
+     * @return fake connection
+     */
+    public Connection createConnection() {
+        Connection[] connection = new Connection[1];
+        connection[0] = proxy(Connection.class, (method, args) -> {
+            if (method.equals("prepareStatement")) {
+                return createPreparedStatement(connection[0]);
+            } else if (method.equals("createArrayOf")) {
+                return createArray((Object[]) args[1]);
+            }
+
+            return null;
+        });
+
+        return connection[0];
+    }
+
+    private Array createArray(Object[] elements) {
+        return proxy(Array.class, (method, args) -> method.equals("getArray") ? elements : null);
+    }
+
+    private PreparedStatement createPreparedStatement(Connection connection) {
+        Object[][] boundElements = new Object[1][];
+
+        return proxy(PreparedStatement.class, (method, args) -> {
+            switch (method) {
+                case "getConnection":
+                    return connection;
+
+                case "setArray":
+                    try {
+                        boundElements[0] = (Object[]) ((Array) args[1]).getArray();
+                    } catch (Exception ex) {
+                        throw new RuntimeException(ex);
+                    }
+                    return null;
+
+                case "executeQuery":
+                    Object[] elements = boundElements[0];
+                    return createResultSet((elements != null) ? elements : new Object[] { null });
+
+                default:
+                    return null;
+            }
+        });
+    }
+
+    private ResultSet createResultSet(Object[] elements) {
+        int[] rowIndex = { -1 };
+        int[] id = { 0 };
+
+        return proxy(ResultSet.class, (method, args) -> {
+            switch (method) {
+                case "next":
+                    if (rowIndex[0] + 1 >= elements.length) {
+                        return false;
+                    }
+                    rowIndex[0]++;
+                    id[0] = nextId.getAndIncrement();
+                    return true;
+
+                case "getInt":
+                    return id[0];
+
+                case "getString":
+                    return elements[rowIndex[0]];
+
+                case "wasNull":
+                    return false;
+
+                default:
+                    return null;
+            }
+        });
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        Object handle(String method, Object[] args);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return (T) Proxy.newProxyInstance(
+            FakeJdbc.class.getClassLoader(),
+            new Class<?>[] { type },
+            (proxy, method, args) -> {
+                Object result = handler.handle(method.getName(), args);
+
+                Class<?> returnType = method.getReturnType();
+                if ((result == null) && returnType.isPrimitive() && (returnType != void.class)) {
+                    return defaultValue(returnType);
+                }
+
+                return result;
+            } //
+        );
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        } else if (type == long.class) {
+            return 0L;
+        } else if (type == double.class) {
+            return 0.0;
+        } else if (type == float.class) {
+            return 0.0f;
+        } else if (type == short.class) {
+            return (short) 0;
+        } else if (type == byte.class) {
+            return (byte) 0;
+        } else if (type == char.class) {
+            return '\0';
+        }
+
+        return 0;
+    }
+}
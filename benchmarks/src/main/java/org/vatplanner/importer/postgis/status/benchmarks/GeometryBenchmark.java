@@ -0,0 +1,71 @@
+package org.vatplanner.importer.postgis.status.benchmarks;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.vatplanner.importer.postgis.status.database.Database;
+
+/**
+ * Measures conversion of geometries as retrieved from PostGIS when loading
+ * track points: parsing WKT as returned by <code>ST_AsText</code> compared to
+ * plain ordinates as returned by <code>ST_X</code>, <code>ST_Y</code> and
+ * <code>ST_Z</code>. Formatting on server side and decoding by the JDBC driver
+ * are not included.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GeometryBenchmark {
+
+    private static final int NUM_POINTS = 1000000;
+
+    private final String[] wktPoints = new String[NUM_POINTS];
+    private final double[] ordinates = new double[NUM_POINTS * 3];
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        for (int i = 0; i < NUM_POINTS; i++) {
+            double longitude = random.nextDouble() * 360.0 - 180.0;
+            double latitude = random.nextDouble() * 180.0 - 90.0;
+            int altitude = random.nextInt(45000);
+
+            wktPoints[i] = String.format(Locale.US, "POINT Z (%.6f %.6f %d)", longitude, latitude, altitude);
+
+            ordinates[i * 3] = longitude;
+            ordinates[i * 3 + 1] = latitude;
+            ordinates[i * 3 + 2] = altitude;
+        }
+    }
+
+    @Benchmark
+    public void convertWkt(Blackhole blackhole) {
+        for (String wktPoint : wktPoints) {
+            blackhole.consume(Database.convertPostGisToGeoCoordinates(wktPoint));
+        }
+    }
+
+    @Benchmark
+    public void convertOrdinates(Blackhole blackhole) {
+        for (int i = 0; i < ordinates.length; i += 3) {
+            blackhole.consume(
+                Database.convertPostGisToGeoCoordinates(ordinates[i], ordinates[i + 1], ordinates[i + 2]) //
+            );
+        }
+    }
+}
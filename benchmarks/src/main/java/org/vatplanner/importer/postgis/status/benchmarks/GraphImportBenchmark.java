@@ -0,0 +1,66 @@
+package org.vatplanner.importer.postgis.status.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.vatplanner.dataformats.vatsimpublic.graph.GraphImport;
+import org.vatplanner.dataformats.vatsimpublic.parser.DataFile;
+import org.vatplanner.dataformats.vatsimpublic.parser.DataFileParser;
+import org.vatplanner.importer.postgis.status.DirtyEntityTracker;
+import org.vatplanner.importer.postgis.status.entities.RelationalStatusEntityFactory;
+import org.vatplanner.importer.postgis.status.utils.Latin1ByteArrayReader;
+
+/**
+ * Measures importing a sequence of parsed data files to a new graph using
+ * relational entities, including dirty tracking.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GraphImportBenchmark {
+
+    @Param({ "1000" })
+    private int numPilots;
+
+    @Param({ "30" })
+    private int numFiles;
+
+    private final List<DataFile> dataFiles = new ArrayList<>();
+
+    @Setup
+    public void setUp() {
+        SyntheticDataFiles generator = new SyntheticDataFiles(numPilots, numPilots / 10, 1);
+        DataFileParser parser = new DataFileParser();
+
+        for (int i = 0; i < numFiles; i++) {
+            dataFiles.add(parser.parse(new Latin1ByteArrayReader(generator.generate(i))));
+        }
+    }
+
+    @Benchmark
+    public int importDataFiles() {
+        DirtyEntityTracker tracker = new DirtyEntityTracker();
+        GraphImport graphImport = new GraphImport(new RelationalStatusEntityFactory(tracker));
+
+        for (DataFile dataFile : dataFiles) {
+            graphImport.importDataFile(dataFile);
+        }
+
+        return tracker.countDirtyEntities();
+    }
+}
@@ -0,0 +1,61 @@
+package org.vatplanner.importer.postgis.status.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.vatplanner.dataformats.vatsimpublic.parser.DataFile;
+import org.vatplanner.dataformats.vatsimpublic.parser.DataFileParser;
+import org.vatplanner.importer.postgis.status.utils.Latin1ByteArrayReader;
+
+/**
+ * Compares parsing a data file through a generic decoding reader chain (as
+ * previously done by <code>ParsedDataFile</code>) to decoding directly from the
+ * byte array. Run with <code>-prof gc</code> to compare allocations per parsed
+ * file.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParseBenchmark {
+
+    @Param({ "500", "1500" })
+    private int numPilots;
+
+    private final DataFileParser parser = new DataFileParser();
+    private byte[] data;
+
+    @Setup
+    public void setUp() {
+        data = new SyntheticDataFiles(numPilots, numPilots / 10, 1).generate(0);
+    }
+
+    @Benchmark
+    public DataFile inputStreamReader() {
+        BufferedReader br = new BufferedReader(
+            new InputStreamReader(new ByteArrayInputStream(data), StandardCharsets.ISO_8859_1) //
+        );
+        return parser.parse(br);
+    }
+
+    @Benchmark
+    public DataFile latin1ByteArrayReader() {
+        return parser.parse(new Latin1ByteArrayReader(data));
+    }
+}
@@ -0,0 +1,143 @@
+package org.vatplanner.importer.postgis.status.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.vatplanner.dataformats.vatsimpublic.parser.DataFile;
+import org.vatplanner.dataformats.vatsimpublic.parser.DataFileParser;
+import org.vatplanner.importer.postgis.status.utils.Latin1ByteArrayReader;
+
+/**
+ * Compares the peak heap needed to parse a chunk of data files through a
+ * generic decoding reader chain (as previously done by
+ * <code>ParsedDataFile</code>) to decoding directly from the byte array.
+ *
+ * <p>
+ * Each invocation parses one chunk and retains all parsed files until the chunk
+ * is complete, as the prefetcher does. Live heap is measured after forcing a
+ * garbage collection when the parser has read the last line of a file, which is
+ * when raw data, reader buffers and the parsed file are held at the same time,
+ * and again after each file has been parsed. The maximum above the live heap
+ * measured before the chunk is reported as <code>peakHeapBytes</code>; the
+ * time score is dominated by forced garbage collections and not meaningful.
+ * </p>
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParseHeapBenchmark {
+
+    @Param({ "500", "1500" })
+    private int numPilots;
+
+    @Param({ "10" })
+    private int numFilesPerChunk;
+
+    private final DataFileParser parser = new DataFileParser();
+    private final List<byte[]> chunk = new ArrayList<>();
+
+    /**
+     * Records the peak live heap of an iteration.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class HeapCounters {
+        private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+        public long peakHeapBytes;
+
+        private long baselineBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            peakHeapBytes = 0;
+            baselineBytes = measureLiveHeap();
+        }
+
+        void sample() {
+            peakHeapBytes = Math.max(peakHeapBytes, measureLiveHeap() - baselineBytes);
+        }
+
+        private static long measureLiveHeap() {
+            // a second collection catches objects only released by finalization
+            System.gc();
+            System.gc();
+            return MEMORY.getHeapMemoryUsage().getUsed();
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        SyntheticDataFiles generator = new SyntheticDataFiles(numPilots, numPilots / 10, 1);
+        for (int i = 0; i < numFilesPerChunk; i++) {
+            chunk.add(generator.generate(i));
+        }
+    }
+
+    @Benchmark
+    public List<DataFile> inputStreamReader(HeapCounters counters) {
+        List<DataFile> parsed = new ArrayList<>();
+        for (byte[] data : chunk) {
+            // raw data used to be held by the RawDataFile until parsing completed
+            BufferedReader br = new BufferedReader(
+                new InputStreamReader(new ByteArrayInputStream(data.clone()), StandardCharsets.ISO_8859_1) //
+            ) {
+                @Override
+                public String readLine() throws IOException {
+                    return sampleAtEnd(super.readLine(), counters);
+                }
+            };
+            parsed.add(parser.parse(br));
+            counters.sample();
+        }
+        return parsed;
+    }
+
+    @Benchmark
+    public List<DataFile> latin1ByteArrayReader(HeapCounters counters) {
+        List<DataFile> parsed = new ArrayList<>();
+        for (byte[] data : chunk) {
+            // the copy is only referenced by the reader, as in ParsedDataFile
+            BufferedReader br = new Latin1ByteArrayReader(data.clone()) {
+                @Override
+                public String readLine() throws IOException {
+                    return sampleAtEnd(super.readLine(), counters);
+                }
+            };
+            parsed.add(parser.parse(br));
+            counters.sample();
+        }
+        return parsed;
+    }
+
+    private static String sampleAtEnd(String line, HeapCounters counters) {
+        if (line == null) {
+            counters.sample();
+        }
+        return line;
+    }
+}
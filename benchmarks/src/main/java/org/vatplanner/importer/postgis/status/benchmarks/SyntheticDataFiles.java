@@ -0,0 +1,199 @@
+package org.vatplanner.importer.postgis.status.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Generates a deterministic sequence of synthetic VATSIM data files in legacy
+ * format. Pilots fly along straight lines between consecutive files, so graph
+ * import sees continuous flights and track points, similar to archived data.
+ * Controllers stay connected for the whole sequence.
+ */
+public class SyntheticDataFiles {
+
+    private static final DateTimeFormatter TIMESTAMP_FORMATTER = DateTimeFormatter
+        .ofPattern("yyyyMMddHHmmss")
+        .withZone(ZoneOffset.UTC);
+
+    private static final String[] AIRPORTS = { "EDDF", "EDDM", "EGLL", "KJFK", "KLAX", "LFPG", "LIRF", "LOWW", "RJTT", "YSSY" };
+    private static final String[] AIRCRAFT_TYPES = { "B738", "A320", "B77W", "A388", "C172", "E190" };
+
+    private static final Instant START = Instant.parse("2019-06-01T12:00:00Z");
+    private static final Duration INTERVAL = Duration.ofMinutes(1);
+
+    private final int numPilots;
+    private final int numControllers;
+    private final List<Pilot> pilots = new ArrayList<>();
+
+    private static class Pilot {
+        private final int vatsimId;
+        private final String callsign;
+        private final String departure;
+        private final String destination;
+        private final String aircraftType;
+        private final double startLatitude;
+        private final double startLongitude;
+        private final double deltaLatitude;
+        private final double deltaLongitude;
+        private final int altitude;
+        private final Instant logonTime;
+
+        private Pilot(Random random, int index) {
+            vatsimId = 1000000 + index;
+            callsign = String.format("SYN%04d", index);
+            departure = AIRPORTS[random.nextInt(AIRPORTS.length)];
+            destination = AIRPORTS[random.nextInt(AIRPORTS.length)];
+            aircraftType = AIRCRAFT_TYPES[random.nextInt(AIRCRAFT_TYPES.length)];
+            startLatitude = random.nextDouble() * 120.0 - 60.0;
+            startLongitude = random.nextDouble() * 340.0 - 170.0;
+            deltaLatitude = random.nextDouble() * 0.1 - 0.05;
+            deltaLongitude = random.nextDouble() * 0.1 - 0.05;
+            altitude = 1000 * (5 + random.nextInt(35));
+            logonTime = START.minus(Duration.ofMinutes(random.nextInt(60)));
+        }
+    }
+
+    /**
+     * Prepares generation of data files with given number of clients.
+     *
+     * @param numPilots number of pilots per data file
+     * @param numControllers number of controllers per data file
+     * @param seed seed for random values; same seed results in same data files
+     */
+    public SyntheticDataFiles(int numPilots, int numControllers, long seed) {
+        this.numPilots = numPilots;
+        this.numControllers = numControllers;
+
+        Random random = new Random(seed);
+        for (int i = 0; i < numPilots; i++) {
+            pilots.add(new Pilot(random, i));
+        }
+    }
+
+    /**
+     * Returns the time a data file has been recorded.
+     *
+     * @param index index of data file in sequence
+     * @return record time of data file
+     */
+    public Instant getRecordTime(int index) {
+        return START.plus(INTERVAL.multipliedBy(index));
+    }
+
+    /**
+     * Generates the data file at given index of the sequence.
+     *
+     * @param index index of data file in sequence
+     * @return content of data file encoded in ISO-8859-1
+     */
+    public byte[] generate(int index) {
+        return generateString(index).getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Generates the data file at given index of the sequence.
+     *
+     * @param index index of data file in sequence
+     * @return content of data file
+     */
+    public String generateString(int index) {
+        Instant recordTime = getRecordTime(index);
+
+        StringBuilder sb = new StringBuilder(512 * (numPilots + numControllers) + 1024);
+        sb.append("; synthetic data file for benchmarks\n");
+        sb.append(";\n");
+        sb.append("!GENERAL:\n");
+        sb.append("VERSION = 8\n");
+        sb.append("RELOAD = 2\n");
+        sb.append("UPDATE = ").append(TIMESTAMP_FORMATTER.format(recordTime)).append("\n");
+        sb.append("ATIS ALLOW MIN = 5\n");
+        sb.append("CONNECTED CLIENTS = ").append(numPilots + numControllers).append("\n");
+        sb.append(";\n");
+        sb.append("!VOICE SERVERS:\n");
+        sb.append(";\n");
+        sb.append("!CLIENTS:\n");
+
+        for (Pilot pilot : pilots) {
+            appendPilot(sb, pilot, index);
+        }
+
+        for (int i = 0; i < numControllers; i++) {
+            appendController(sb, i);
+        }
+
+        sb.append(";\n");
+        sb.append("!SERVERS:\n");
+        sb.append("USA-WEST:127.0.0.1:San Francisco, USA:Synthetic server:1:\n");
+        sb.append(";\n");
+        sb.append("!PREFILE:\n");
+        sb.append(";\n");
+
+        return sb.toString();
+    }
+
+    private void appendPilot(StringBuilder sb, Pilot pilot, int index) {
+        double latitude = pilot.startLatitude + pilot.deltaLatitude * index;
+        double longitude = pilot.startLongitude + pilot.deltaLongitude * index;
+
+        // callsign:cid:realname:clienttype:frequency:latitude:longitude:altitude:groundspeed
+        sb.append(pilot.callsign).append(':')
+            .append(pilot.vatsimId).append(':')
+            .append("Synthetic Pilot ").append(pilot.departure).append(':')
+            .append("PILOT:")
+            .append(':')
+            .append(String.format(Locale.US, "%.5f", latitude)).append(':')
+            .append(String.format(Locale.US, "%.5f", longitude)).append(':')
+            .append(pilot.altitude).append(':')
+            .append(450).append(':');
+
+        // planned_aircraft:planned_tascruise:planned_depairport:planned_altitude:planned_destairport
+        sb.append(pilot.aircraftType).append(':')
+            .append(460).append(':')
+            .append(pilot.departure).append(':')
+            .append(pilot.altitude).append(':')
+            .append(pilot.destination).append(':');
+
+        // server:protrevision:rating:transponder:facilitytype:visualrange
+        sb.append("USA-WEST:100:1:2000:::");
+
+        // planned_revision:planned_flighttype:planned_deptime:planned_actdeptime
+        // planned_hrsenroute:planned_minenroute:planned_hrsfuel:planned_minfuel
+        // planned_altairport:planned_remarks:planned_route
+        sb.append("1:I:1200:1200:5:30:7:0:")
+            .append(pilot.departure).append(':')
+            .append("/v/:DCT:");
+
+        // planned_depairport_lat:planned_depairport_lon:planned_destairport_lat:planned_destairport_lon
+        // atis_message:time_last_atis_received:time_logon:heading:QNH_iHg:QNH_Mb
+        sb.append("0:0:0:0:::")
+            .append(TIMESTAMP_FORMATTER.format(pilot.logonTime)).append(':')
+            .append(90).append(':')
+            .append("29.92:1013:\n");
+    }
+
+    private void appendController(StringBuilder sb, int index) {
+        String airport = AIRPORTS[index % AIRPORTS.length];
+        String callsign = String.format("%s_%d_CTR", airport, index);
+
+        sb.append(callsign).append(':')
+            .append(1500000 + index).append(':')
+            .append("Synthetic Controller:")
+            .append("ATC:")
+            .append(String.format(Locale.US, "%.3f", 118.0 + (index % 100) * 0.025)).append(':')
+            .append("50.00000:8.00000:0:0:")
+            .append(":::::")
+            .append("USA-WEST:100:5:0:6:300:")
+            .append(":::::::::::::::")
+            .append("^\u00a7Synthetic ATIS for ").append(callsign).append(':')
+            .append(TIMESTAMP_FORMATTER.format(START)).append(':')
+            .append(TIMESTAMP_FORMATTER.format(START.minus(Duration.ofHours(1)))).append(':')
+            .append("0:0:0:\n");
+    }
+}
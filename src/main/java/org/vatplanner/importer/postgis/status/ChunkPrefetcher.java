@@ -0,0 +1,200 @@
+package org.vatplanner.importer.postgis.status;
+
+import static java.util.Arrays.asList;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.vatplanner.archiver.client.RawDataFileClient;
+import org.vatplanner.archiver.common.PackerMethod;
+
+/**
+ * Requests chunks of data files from the archive and parses them. Following
+ * chunks are requested in advance as soon as the fetch time of the last data
+ * file of the previous chunk is known, so archive I/O and parsing overlap with
+ * graph import and database writes.
+ *
+ * <p>
+ * The number of chunks being requested in advance is limited by the configured
+ * depth. Prefetching is postponed while heap usage exceeds the configured
+ * percentage and resumed when the next chunk is requested.
+ * </p>
+ *
+ * <p>
+ * Chunks are limited to the configured maximum number of files per chunk and
+ * the number of files remaining before the next restart. The file limit of
+ * prefetched chunks follows the same budget: a restart is assumed once the
+ * remaining files have been imported, after which the full number of files
+ * before restart is available again. Prefetched chunks are only handed out if
+ * they match the requested start time and remaining number of files, otherwise
+ * they are discarded and a new request is issued.
+ * </p>
+ */
+public class ChunkPrefetcher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChunkPrefetcher.class);
+
+    private final RawDataFileClient archiveClient;
+    private final ParserExecutor parserExecutor;
+    private final PackerMethod packerMethod = PackerMethod.ZIP_DEFLATE; // TODO: configure
+    private final int depth;
+    private final int maxHeapUsagePercentage;
+    private final int maxFilesPerChunk;
+    private final int maxFilesBeforeRestart;
+
+    private final Runtime runtime = Runtime.getRuntime();
+
+    private final Deque<Chunk> prefetched = new ArrayDeque<>();
+    private Chunk tail;
+
+    private static class Chunk {
+        private final Instant earliestFetchTimestamp;
+        private final int remainingFilesBeforeRestart;
+        private final CompletableFuture<List<ParsedDataFile>> future;
+
+        private Chunk(Instant earliestFetchTimestamp, int remainingFilesBeforeRestart, CompletableFuture<List<ParsedDataFile>> future) {
+            this.earliestFetchTimestamp = earliestFetchTimestamp;
+            this.remainingFilesBeforeRestart = remainingFilesBeforeRestart;
+            this.future = future;
+        }
+
+        private boolean matches(Instant earliestFetchTimestamp, int remainingFilesBeforeRestart) {
+            return this.earliestFetchTimestamp.equals(earliestFetchTimestamp)
+                && (this.remainingFilesBeforeRestart == remainingFilesBeforeRestart);
+        }
+    }
+
+    /**
+     * Creates a new prefetcher.
+     *
+     * @param archiveClient client to request data from archive
+     * @param parserExecutor executor to parse received data files
+     * @param depth maximum number of chunks to request in advance; 0 disables
+     *        prefetching
+     * @param maxHeapUsagePercentage prefetching is postponed while used heap
+     *        exceeds this percentage of maximum heap
+     * @param maxFilesPerChunk maximum number of data files per chunk
+     * @param maxFilesBeforeRestart maximum number of data files imported before
+     *        the import restarts
+     */
+    public ChunkPrefetcher(RawDataFileClient archiveClient, ParserExecutor parserExecutor, int depth, int maxHeapUsagePercentage, int maxFilesPerChunk, int maxFilesBeforeRestart) {
+        if (depth < 0) {
+            throw new IllegalArgumentException("prefetch depth must not be negative, got " + depth);
+        }
+
+        if (maxFilesPerChunk < 1) {
+            throw new IllegalArgumentException("maximum files per chunk must be at least 1, got " + maxFilesPerChunk);
+        }
+
+        if (maxFilesBeforeRestart < 1) {
+            throw new IllegalArgumentException(
+                "maximum files before restart must be at least 1, got " + maxFilesBeforeRestart //
+            );
+        }
+
+        this.archiveClient = archiveClient;
+        this.parserExecutor = parserExecutor;
+        this.depth = depth;
+        this.maxHeapUsagePercentage = maxHeapUsagePercentage;
+        this.maxFilesPerChunk = maxFilesPerChunk;
+        this.maxFilesBeforeRestart = maxFilesBeforeRestart;
+    }
+
+    /**
+     * Requests the chunk starting at given fetch time. If the chunk has already
+     * been prefetched, the previous request is returned.
+     *
+     * @param earliestFetchTimestamp fetch time of earliest data file to include
+     * @param remainingFilesBeforeRestart number of data files which may still be
+     *        imported before the import restarts; limits the chunk in addition
+     *        to the maximum number of files per chunk
+     * @return parsed data files, sorted by fetch time; empty if archive has no
+     *         more data
+     */
+    public synchronized CompletableFuture<List<ParsedDataFile>> request(Instant earliestFetchTimestamp, int remainingFilesBeforeRestart) {
+        Chunk chunk = prefetched.pollFirst();
+
+        if ((chunk != null) && !chunk.matches(earliestFetchTimestamp, remainingFilesBeforeRestart)) {
+            LOGGER.debug(
+                "discarding {} prefetched chunks, requested chunk from {} ({} files before restart) but prefetched from {} ({} files before restart)",
+                prefetched.size() + 1, earliestFetchTimestamp, remainingFilesBeforeRestart,
+                chunk.earliestFetchTimestamp, chunk.remainingFilesBeforeRestart //
+            );
+
+            prefetched.clear();
+            chunk = null;
+        }
+
+        if (chunk == null) {
+            chunk = startRequest(earliestFetchTimestamp, remainingFilesBeforeRestart);
+        } else {
+            LOGGER.debug("using prefetched chunk from {}", earliestFetchTimestamp);
+        }
+
+        continuePrefetch();
+
+        return chunk.future;
+    }
+
+    private Chunk startRequest(Instant earliestFetchTimestamp, int remainingFilesBeforeRestart) {
+        int fileLimit = Integer.min(maxFilesPerChunk, remainingFilesBeforeRestart);
+
+        LOGGER.debug("requesting chunk from {} (limit {})", earliestFetchTimestamp, fileLimit);
+
+        // TODO: support JSON v3
+        CompletableFuture<List<ParsedDataFile>> future = archiveClient
+            .request(packerMethod, earliestFetchTimestamp, Instant.MAX, fileLimit, asList("legacy"))
+            .thenCompose(parserExecutor::parse);
+
+        Chunk chunk = new Chunk(earliestFetchTimestamp, remainingFilesBeforeRestart, future);
+        tail = chunk;
+
+        future.whenComplete((files, ex) -> continuePrefetch());
+
+        return chunk;
+    }
+
+    private synchronized void continuePrefetch() {
+        if ((tail == null) || !tail.future.isDone() || tail.future.isCompletedExceptionally()) {
+            return;
+        }
+
+        if (prefetched.size() >= depth) {
+            return;
+        }
+
+        List<ParsedDataFile> files = tail.future.join();
+        if (files.isEmpty()) {
+            // archive has no more data
+            return;
+        }
+
+        int heapUsagePercentage = getHeapUsagePercentage();
+        if (heapUsagePercentage > maxHeapUsagePercentage) {
+            LOGGER.debug(
+                "postponing prefetch, heap usage of {}% exceeds threshold of {}%",
+                heapUsagePercentage, maxHeapUsagePercentage //
+            );
+            return;
+        }
+
+        // import restarts with the full budget once remaining files are used up
+        int nextRemainingFilesBeforeRestart = tail.remainingFilesBeforeRestart - files.size();
+        if (nextRemainingFilesBeforeRestart <= 0) {
+            nextRemainingFilesBeforeRestart = maxFilesBeforeRestart;
+        }
+
+        Instant nextEarliestFetchTimestamp = files.get(files.size() - 1).getFetchTime().plusSeconds(1);
+        prefetched.addLast(startRequest(nextEarliestFetchTimestamp, nextRemainingFilesBeforeRestart));
+    }
+
+    private int getHeapUsagePercentage() {
+        long usedMemory = runtime.totalMemory() - runtime.freeMemory();
+        return (int) Math.round((double) usedMemory / runtime.maxMemory() * 100.0);
+    }
+}
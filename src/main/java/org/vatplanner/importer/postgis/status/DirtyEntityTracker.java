@@ -1,42 +1,189 @@
 package org.vatplanner.importer.postgis.status;
 
-import java.util.Collections;
+import java.util.AbstractList;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
+import java.util.RandomAccess;
 
 import org.vatplanner.importer.postgis.status.entities.DirtyMark;
 
+/**
+ * Keeps track of all dirty entities, grouped by entity class.
+ *
+ * <p>
+ * Each entity registers once to obtain an {@link Entry} which holds its dirty
+ * flag. Marking an entity dirty or clean only changes that flag; the entity is
+ * appended to the list of its class when it becomes dirty while not already
+ * being listed. Repeatedly marking an already dirty entity thus neither hashes
+ * nor allocates. Clean entities remain listed until the list is drained.
+ * </p>
+ *
+ * <p>
+ * Dirty entities are retrieved by {@link #drain(Class)} which hands out the
+ * list of each class without copying it. Drained entities must be marked clean
+ * by the consumer. Entities are not restored if consuming them fails; a failed
+ * write leaves the graph inconsistent with the database anyway (IDs have
+ * already been assigned), so the application has to exit in that case.
+ * </p>
+ *
+ * <p>
+ * Instances are not thread-safe.
+ * </p>
+ */
 public class DirtyEntityTracker {
 
-    private final Map<Class<? extends DirtyMark>, Set<DirtyMark>> dirtyEntitiesByClass = new HashMap<>();
+    private final Map<Class<? extends DirtyMark>, EntityList<?>> listsByClass = new HashMap<>();
 
-    private <T extends DirtyMark> Set<T> access(Class<T> entityClass) {
-        return (Set<T>) dirtyEntitiesByClass.computeIfAbsent(entityClass, c -> new HashSet<>());
+    /**
+     * Holds the dirty state of a single entity.
+     *
+     * @param <T> entity class
+     */
+    public static class Entry<T extends DirtyMark> {
+        private final T entity;
+        private final EntityList<T> list;
+        private boolean isDirty = false;
+        private boolean isListed = false;
+
+        private Entry(T entity, EntityList<T> list) {
+            this.entity = entity;
+            this.list = list;
+        }
+
+        /**
+         * Marks the entity dirty.
+         */
+        public void markDirty() {
+            if (isDirty) {
+                return;
+            }
+
+            isDirty = true;
+            list.numDirty++;
+
+            if (!isListed) {
+                isListed = true;
+                list.entries.add(this);
+            }
+        }
+
+        /**
+         * Marks the entity clean.
+         */
+        public void markClean() {
+            if (!isDirty) {
+                return;
+            }
+
+            isDirty = false;
+            list.numDirty--;
+        }
+
+        /**
+         * Checks if the entity is currently dirty.
+         *
+         * @return true if dirty, false if clean
+         */
+        public boolean isDirty() {
+            return isDirty;
+        }
+    }
+
+    private static class EntityList<T extends DirtyMark> {
+        private ArrayList<Entry<T>> entries = new ArrayList<>();
+        private int numDirty = 0;
+
+        private ArrayList<Entry<T>> detach() {
+            // drop clean entries in place, the list itself is handed out
+            int numKept = 0;
+            for (int i = 0; i < entries.size(); i++) {
+                Entry<T> entry = entries.get(i);
+                entry.isListed = false;
+                if (entry.isDirty) {
+                    entries.set(numKept++, entry);
+                }
+            }
+            entries.subList(numKept, entries.size()).clear();
+
+            ArrayList<Entry<T>> detached = entries;
+            entries = new ArrayList<>();
+
+            return detached;
+        }
     }
 
-    public <T extends DirtyMark> void recordAsDirty(Class<T> entityClass, T entity) {
-        access(entityClass).add(entity);
+    /**
+     * Dirty entities of one class handed out by {@link #drain(Class)}, in order
+     * they have been listed. Entities are no longer listed by the tracker but keep
+     * their dirty flag until they are marked clean by the consumer.
+     *
+     * @param <T> entity class
+     */
+    public static class Drain<T extends DirtyMark> extends AbstractList<T> implements RandomAccess {
+        private final ArrayList<Entry<T>> entries;
+
+        private Drain(ArrayList<Entry<T>> entries) {
+            this.entries = entries;
+        }
+
+        @Override
+        public T get(int index) {
+            return entries.get(index).entity;
+        }
+
+        @Override
+        public int size() {
+            return entries.size();
+        }
+    }
+
+    private <T extends DirtyMark> EntityList<T> access(Class<T> entityClass) {
+        return (EntityList<T>) listsByClass.computeIfAbsent(entityClass, c -> new EntityList<>());
     }
 
-    public <T extends DirtyMark> void recordAsClean(Class<T> entityClass, T entity) {
-        access(entityClass).remove(entity);
+    /**
+     * Registers an entity for tracking. The entity starts clean and should keep
+     * the returned {@link Entry} to change its state.
+     *
+     * @param entityClass class the entity should be grouped by
+     * @param entity entity to track
+     * @return dirty state of the entity
+     */
+    public <T extends DirtyMark> Entry<T> register(Class<T> entityClass, T entity) {
+        return new Entry<>(entity, access(entityClass));
     }
 
-    public <T extends DirtyMark> Set<T> getDirtyEntities(Class<T> entityClass) {
-        return Collections.unmodifiableSet(new HashSet<>(access(entityClass)));
+    /**
+     * Hands out all entities of given class which are currently dirty, in order
+     * they have been listed, and stops listing them. Each dirty entity is thus
+     * handed out only once; entities becoming dirty again after having been
+     * marked clean by the consumer will be listed again.
+     *
+     * @param entityClass class of entities to retrieve
+     * @return all dirty entities of given class
+     */
+    public <T extends DirtyMark> Drain<T> drain(Class<T> entityClass) {
+        return new Drain<>(access(entityClass).detach());
     }
 
-    public <T extends DirtyMark> boolean isDirty(Class<T> entityClass, T entity) {
-        return access(entityClass).contains(entity);
+    /**
+     * Counts all dirty entities of given class, including those handed out by
+     * drains which have not been marked clean yet.
+     *
+     * @param entityClass class of entities to count
+     * @return number of dirty entities of given class
+     */
+    public int countDirtyEntities(Class<? extends DirtyMark> entityClass) {
+        return access(entityClass).numDirty;
     }
 
     public int countDirtyEntities() {
-        return dirtyEntitiesByClass
-            .values()
-            .stream()
-            .mapToInt(Set::size)
-            .sum();
+        int numDirty = 0;
+        for (EntityList<?> list : listsByClass.values()) {
+            numDirty += list.numDirty;
+        }
+
+        return numDirty;
     }
 }
@@ -16,6 +16,7 @@ public class Main {
 
     private final Configuration config;
     private final RawDataFileClient archiveClient;
+    private final ChunkPrefetcher prefetcher;
     private final Database database;
     private final MemoryWatchdog memoryWatchdog;
 
@@ -32,6 +33,17 @@ public class Main {
         // set up services
         archiveClient = new RawDataFileClient(config.getArchiveClientConfig());
         database = new Database(config.getDatabaseConfig());
+        database.loadEnumerations();
+
+        ImportConfiguration importConfig = config.getImportConfig();
+        prefetcher = new ChunkPrefetcher(
+            archiveClient,
+            new ParserExecutor(importConfig.getParserThreads(), importConfig.getParserQueueSize()),
+            importConfig.getPrefetchDepth(),
+            importConfig.getPrefetchMaxHeapPercentage(),
+            importConfig.getMaxFilesPerChunk(),
+            importConfig.getMaxFilesBeforeRestart() //
+        );
 
         memoryWatchdog = new MemoryWatchdog(config.getMemoryConfig());
         memoryWatchdog.recordStartConsumption();
@@ -53,22 +65,21 @@ public class Main {
 
         // run import until all data has been processed, memory consumption
         // grows too large or we hit some error
+        StatusImport importer = null;
         while (true) {
-            StatusImport importer = new StatusImport(archiveClient, database);
-            importer.setAllowImportOnEmptyDatabase(allowImportOnEmptyDatabase);
-            importer.setEarliestFetchTimestampEmptyDatabase(importConfig.getEmptyDatabaseEarliestFetchTime());
-            allowImportOnEmptyDatabase = false;
+            if (importer == null) {
+                importer = new StatusImport(prefetcher, database);
+                importer.setAllowImportOnEmptyDatabase(allowImportOnEmptyDatabase);
+                importer.setEarliestFetchTimestampEmptyDatabase(importConfig.getEmptyDatabaseEarliestFetchTime());
+                allowImportOnEmptyDatabase = false;
+            }
 
             int remainingFilesBeforeRestart = importConfig.getMaxFilesBeforeRestart();
             while (remainingFilesBeforeRestart > 0) {
-                int numImported = importer.importNextChunk(
-                    Integer.min(
-                        importConfig.getMaxFilesPerChunk(),
-                        remainingFilesBeforeRestart //
-                    ) //
-                );
+                int numImported = importer.importNextChunk(remainingFilesBeforeRestart);
                 if (numImported == 0) {
                     LOGGER.info("no further data, shutting down");
+                    database.close();
                     System.exit(0);
                 }
 
@@ -79,6 +90,31 @@ public class Main {
                 terminateIfEmptyDatabaseIsAllowed();
             }
 
+            // entities must have been committed before graph gets reloaded
+            database.awaitPendingWrites();
+
+            // information no longer needed for the next reload is released
+            // before measuring, whether the graph is retained or not
+            importer.pruneReloadCaches();
+
+            // reloading the graph from database is expensive, only restart if
+            // the graph no longer fits into memory; entities cannot be evicted
+            // from the graph, so it keeps growing while being retained and this
+            // is only a threshold on heap usage measured after a forced GC.
+            // The memory watchdog is not checked while retaining as the graph
+            // would count as a permanent increase since application start.
+            int retainGraphMaxHeapPercentage = importConfig.getRetainGraphMaxHeapPercentage();
+            if (retainGraphMaxHeapPercentage > 0) {
+                int heapUsagePercentage = memoryWatchdog.measureHeapUsagePercentage();
+                if (heapUsagePercentage <= retainGraphMaxHeapPercentage) {
+                    LOGGER.info(
+                        "maximum number of files ({}) has been imported, retaining graph at {}% heap usage",
+                        importConfig.getMaxFilesBeforeRestart(), heapUsagePercentage //
+                    );
+                    continue;
+                }
+            }
+
             LOGGER.info("maximum number of files ({}) has been imported, restarting clean to avoid OOM",
                 importConfig.getMaxFilesBeforeRestart());
 
@@ -1,5 +1,8 @@
 package org.vatplanner.importer.postgis.status;
 
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.vatplanner.importer.postgis.status.configuration.MemoryConfiguration;
@@ -20,12 +23,19 @@ import org.vatplanner.importer.postgis.status.configuration.MemoryConfiguration;
  * within limits afterwards. In case it is not, the application is killed with
  * the configured exit code.
  * </p>
+ *
+ * <p>
+ * Memory usage includes direct buffers allocated outside of the heap (used to
+ * buffer COPY data) as such memory is not limited by the maximum heap size and
+ * not freed by an explicit GC run as long as it is still referenced.
+ * </p>
  */
 public class MemoryWatchdog {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(MemoryWatchdog.class);
 
     private final Runtime runtime;
+    private final BufferPoolMXBean directBufferPool;
     private final int maxPercentageIncreaseSinceFirstImport;
     private final int maxMemoryIncreaseSinceFirstImportMegaBytes;
     private final int exitCode;
@@ -38,23 +48,57 @@ public class MemoryWatchdog {
         exitCode = memoryConfig.getExitCode();
 
         runtime = Runtime.getRuntime();
+
+        directBufferPool = ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)
+            .stream()
+            .filter(pool -> "direct".equals(pool.getName()))
+            .findFirst()
+            .orElse(null);
+
+        if (directBufferPool == null) {
+            LOGGER.warn("direct buffer memory cannot be monitored, only heap will be checked");
+        }
+    }
+
+    private long measureDirectMemory() {
+        if (directBufferPool == null) {
+            return 0;
+        }
+
+        return directBufferPool.getMemoryUsed();
     }
 
     public void recordStartConsumption() {
-        usedMemoryBeforeFirstImport = runtime.totalMemory();
+        usedMemoryBeforeFirstImport = runtime.totalMemory() + measureDirectMemory();
+    }
+
+    /**
+     * Triggers a GC run and returns the share of maximum heap size in use
+     * afterwards.
+     *
+     * @return used heap in percent of maximum heap size
+     */
+    public int measureHeapUsagePercentage() {
+        System.gc();
+
+        long usedMemory = runtime.totalMemory() - runtime.freeMemory();
+
+        return (int) (usedMemory * 100 / runtime.maxMemory());
     }
 
     public void cleanUpAndCheck() {
         long maxMemory = runtime.maxMemory();
 
-        long usedMemoryBeforeGC = runtime.totalMemory();
+        long usedHeapBeforeGC = runtime.totalMemory();
 
         System.gc();
 
-        long usedMemoryAfterGC = runtime.totalMemory();
+        long usedHeapAfterGC = runtime.totalMemory();
+        long usedDirectMemory = measureDirectMemory();
+        long usedMemoryAfterGC = usedHeapAfterGC + usedDirectMemory;
 
-        double percentUsedBeforeGC = (double) usedMemoryBeforeGC / maxMemory * 100.0;
-        double percentUsedAfterGC = (double) usedMemoryAfterGC / maxMemory * 100.0;
+        double percentUsedBeforeGC = (double) usedHeapBeforeGC / maxMemory * 100.0;
+        double percentUsedAfterGC = (double) usedHeapAfterGC / maxMemory * 100.0;
 
         long memoryIncreaseSinceFirstImport = usedMemoryAfterGC - usedMemoryBeforeFirstImport;
         double percentIncreaseSinceFirstImport = //
@@ -65,9 +109,10 @@ public class MemoryWatchdog {
         long memoryIncreaseSinceFirstImportMegaBytes = memoryIncreaseSinceFirstImport / 1024 / 1024;
 
         LOGGER.info(
-            "before GC {}% used, after GC {}% used, increase of {} MB / {}% since application start",
+            "before GC {}% heap used, after GC {}% heap used, {} MB direct memory used, increase of {} MB / {}% since application start",
             Math.round(percentUsedBeforeGC),
             Math.round(percentUsedAfterGC),
+            usedDirectMemory / 1024 / 1024,
             memoryIncreaseSinceFirstImportMegaBytes,
             Math.round(percentIncreaseSinceFirstImport) //
         );
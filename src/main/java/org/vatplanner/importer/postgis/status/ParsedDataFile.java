@@ -1,17 +1,11 @@
 package org.vatplanner.importer.postgis.status;
 
-import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.vatplanner.archiver.common.RawDataFile;
 import org.vatplanner.dataformats.vatsimpublic.parser.DataFile;
 import org.vatplanner.dataformats.vatsimpublic.parser.DataFileParser;
+import org.vatplanner.importer.postgis.status.utils.Latin1ByteArrayReader;
 
 /**
  * Holds a parsed {@link DataFile} and additional meta information in the same
@@ -24,7 +18,6 @@ public class ParsedDataFile {
      */
     // TODO: move to data formats module?
 
-    private static final Logger LOGGER = LoggerFactory.getLogger(ParsedDataFile.class);
     private static final DataFileParser PARSER = new DataFileParser();
 
     private String fetchNode;
@@ -34,27 +27,23 @@ public class ParsedDataFile {
     private String fetchUrlRetrieved;
 
     /**
-     * Parses the given {@link RawDataFile} maintaining all meta information. After
-     * parsing, original content will be cleared.
+     * Parses the given {@link RawDataFile} maintaining all meta information.
+     * Original content will be cleared before parsing; raw data is only
+     * referenced by the reader until it has been read completely.
      *
      * @param rawDataFile data file to be parsed
      */
     public ParsedDataFile(RawDataFile rawDataFile) {
-        ByteArrayInputStream bais = new ByteArrayInputStream(rawDataFile.getData());
-        BufferedReader br = new BufferedReader(new InputStreamReader(bais, StandardCharsets.ISO_8859_1));
-        content = PARSER.parse(br);
-        try {
-            bais.close();
-        } catch (IOException ex) {
-            LOGGER.warn("Failed to close byte array stream; this may result in a memory leak!", ex);
-        }
-
         fetchNode = rawDataFile.getFetchNode();
         fetchTime = rawDataFile.getFetchTime();
         fetchUrlRequested = rawDataFile.getFetchUrlRequested();
         fetchUrlRetrieved = rawDataFile.getFetchUrlRetrieved();
 
+        Latin1ByteArrayReader reader = new Latin1ByteArrayReader(rawDataFile.getData());
         rawDataFile.clear();
+
+        content = PARSER.parse(reader);
+        reader.close();
     }
 
     /**
@@ -0,0 +1,182 @@
+package org.vatplanner.importer.postgis.status;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.vatplanner.archiver.common.RawDataFile;
+
+/**
+ * Parses {@link RawDataFile}s on a dedicated, bounded thread pool. Each file is
+ * parsed as an individual task so parsing starts for all files immediately and
+ * does not compete with other users of the common fork-join pool.
+ *
+ * <p>
+ * At most the configured number of files are queued for the parser threads at
+ * once. Further files are held back and only queued when previously queued
+ * files have been parsed, so threads submitting files (such as callbacks of
+ * the archive client) neither block nor parse files themselves.
+ * </p>
+ */
+public class ParserExecutor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParserExecutor.class);
+
+    private final int numThreads;
+    private final int maxQueuedTasks;
+    private final ThreadPoolExecutor executor;
+
+    private final Deque<Runnable> heldBackTasks = new ArrayDeque<>();
+    private int numQueuedTasks = 0;
+
+    /**
+     * Creates a new executor.
+     *
+     * @param numThreads number of parser threads; 0 to use the number of available
+     *        processors
+     * @param queueSize maximum number of files queued for parser threads
+     */
+    public ParserExecutor(int numThreads, int queueSize) {
+        if (numThreads < 0) {
+            throw new IllegalArgumentException("number of parser threads must not be negative, got " + numThreads);
+        }
+
+        if (queueSize < 1) {
+            throw new IllegalArgumentException("parser queue size must be at least 1, got " + queueSize);
+        }
+
+        this.numThreads = (numThreads > 0) ? numThreads : Runtime.getRuntime().availableProcessors();
+
+        // tasks being run by a thread no longer occupy the queue
+        maxQueuedTasks = this.numThreads + queueSize;
+
+        // the queue is bounded by holding back further tasks instead of rejecting them
+        AtomicInteger threadCounter = new AtomicInteger();
+        executor = new ThreadPoolExecutor(
+            this.numThreads, this.numThreads,
+            0, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(),
+            runnable -> {
+                Thread thread = new Thread(runnable, "parser-" + threadCounter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            } //
+        );
+    }
+
+    private synchronized void submit(Runnable task) {
+        heldBackTasks.addLast(task);
+        queueHeldBackTasks();
+    }
+
+    private synchronized void onTaskCompleted() {
+        numQueuedTasks--;
+        queueHeldBackTasks();
+    }
+
+    private void queueHeldBackTasks() {
+        while ((numQueuedTasks < maxQueuedTasks) && !heldBackTasks.isEmpty()) {
+            Runnable task = heldBackTasks.removeFirst();
+            numQueuedTasks++;
+
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    onTaskCompleted();
+                }
+            });
+        }
+    }
+
+    /**
+     * Parses all given files. Files are submitted in order of fetch time.
+     *
+     * @param rawDataFiles files to parse; content will be cleared after parsing
+     * @return parsed data files, sorted by fetch time
+     */
+    public CompletableFuture<List<ParsedDataFile>> parse(List<RawDataFile> rawDataFiles) {
+        Instant start = Instant.now();
+
+        List<RawDataFile> sortedRawDataFiles = new ArrayList<>(rawDataFiles);
+        sortedRawDataFiles.sort(Comparator.comparing(RawDataFile::getFetchTime));
+
+        int numFiles = sortedRawDataFiles.size();
+        long[] parseNanos = new long[numFiles];
+        List<CompletableFuture<ParsedDataFile>> futures = new ArrayList<>(numFiles);
+        for (int i = 0; i < numFiles; i++) {
+            RawDataFile rawDataFile = sortedRawDataFiles.get(i);
+            int index = i;
+
+            CompletableFuture<ParsedDataFile> future = new CompletableFuture<>();
+            futures.add(future);
+
+            submit(() -> {
+                try {
+                    long fileStart = System.nanoTime();
+                    ParsedDataFile parsed = new ParsedDataFile(rawDataFile);
+                    parseNanos[index] = System.nanoTime() - fileStart;
+
+                    LOGGER.trace(
+                        "parsing data file fetched {} took {}ms",
+                        parsed.getFetchTime(), parseNanos[index] / 1000000 //
+                    );
+
+                    future.complete(parsed);
+                } catch (Throwable ex) {
+                    future.completeExceptionally(ex);
+                }
+            });
+        }
+
+        return CompletableFuture
+            .allOf(futures.toArray(new CompletableFuture[numFiles]))
+            .thenApply(x -> {
+                List<ParsedDataFile> parsed = futures.stream()
+                    .map(CompletableFuture::join)
+                    .sorted(Comparator.comparing(ParsedDataFile::getFetchTime))
+                    .collect(Collectors.toList());
+
+                logStatistics(parseNanos, start);
+
+                return parsed;
+            });
+    }
+
+    private void logStatistics(long[] parseNanos, Instant start) {
+        if (parseNanos.length == 0) {
+            return;
+        }
+
+        long totalNanos = 0;
+        long maxNanos = 0;
+        for (long nanos : parseNanos) {
+            totalNanos += nanos;
+            maxNanos = Long.max(maxNanos, nanos);
+        }
+
+        Instant end = Instant.now();
+        Runtime runtime = Runtime.getRuntime();
+        LOGGER.debug(
+            "parsed {} data files in {}ms using {} threads, per file {}ms on average, {}ms max; {}MB heap in use",
+            parseNanos.length,
+            Duration.between(start, end).toMillis(),
+            numThreads,
+            totalNanos / parseNanos.length / 1000000,
+            maxNanos / 1000000,
+            (runtime.totalMemory() - runtime.freeMemory()) / 1024 / 1024 //
+        );
+    }
+}
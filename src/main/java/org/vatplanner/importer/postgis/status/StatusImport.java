@@ -1,19 +1,13 @@
 package org.vatplanner.importer.postgis.status;
 
-import static java.util.Arrays.asList;
-
 import java.time.Duration;
 import java.time.Instant;
-import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
-import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.vatplanner.archiver.client.RawDataFileClient;
-import org.vatplanner.archiver.common.PackerMethod;
 import org.vatplanner.dataformats.vatsimpublic.entities.status.StatusEntityFactory;
 import org.vatplanner.dataformats.vatsimpublic.graph.GraphImport;
 import org.vatplanner.dataformats.vatsimpublic.graph.GraphIndex;
@@ -34,10 +28,9 @@ public class StatusImport {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(StatusImport.class);
 
-    private final RawDataFileClient archiveClient;
+    private final ChunkPrefetcher prefetcher;
     private final Database database;
 
-    private final PackerMethod packerMethod = PackerMethod.ZIP_DEFLATE; // TODO: configure
     private final Duration fullGraphReloadTime = Duration.ofHours(3); // TODO: configure
     private boolean allowImportOnEmptyDatabase = false;
     private Instant earliestFetchTimestampEmptyDatabase = Instant.MIN;
@@ -46,10 +39,11 @@ public class StatusImport {
     private final StatusEntityFactory statusEntityFactory = new RelationalStatusEntityFactory(tracker);
     private final GraphImport graphImport = new GraphImport(statusEntityFactory);
 
-    private Instant latestImportedFetchTimestamp;
+    private Instant latestSubmittedFetchTimestamp;
+    private volatile Instant latestImportedFetchTimestamp;
 
-    public StatusImport(RawDataFileClient archiveClient, Database database) {
-        this.archiveClient = archiveClient;
+    public StatusImport(ChunkPrefetcher prefetcher, Database database) {
+        this.prefetcher = prefetcher;
         this.database = database;
     }
 
@@ -76,12 +70,35 @@ public class StatusImport {
         this.earliestFetchTimestampEmptyDatabase = earliestFetchTimestampEmptyDatabase;
     }
 
-    public int importNextChunk(int fileLimit) {
-        if (latestImportedFetchTimestamp == null) {
+    /**
+     * Returns the fetch time of the latest data file whose entities have been
+     * committed to database.
+     *
+     * @return fetch time of latest data file committed to database; null if
+     *         unknown
+     */
+    public Instant getLatestImportedFetchTimestamp() {
+        return latestImportedFetchTimestamp;
+    }
+
+    /**
+     * Releases information held only to reload the graph, as far as it is no
+     * longer needed by a reload following the data imported so far. To be called
+     * on every restart, whether the graph is retained or reloaded.
+     */
+    public void pruneReloadCaches() {
+        if (latestImportedFetchTimestamp != null) {
+            database.prunePreselectionCache(latestImportedFetchTimestamp.minus(fullGraphReloadTime));
+        }
+    }
+
+    public int importNextChunk(int remainingFilesBeforeRestart) {
+        if (latestSubmittedFetchTimestamp == null) {
             latestImportedFetchTimestamp = database.getLatestFetchTime();
+            latestSubmittedFetchTimestamp = latestImportedFetchTimestamp;
         }
 
-        if (latestImportedFetchTimestamp == null) {
+        if (latestSubmittedFetchTimestamp == null) {
             LOGGER.warn("Database seems to hold no records at all; could not retrieve last imported fetch timestamp.");
 
             if (!allowImportOnEmptyDatabase) {
@@ -98,24 +115,14 @@ public class StatusImport {
         // disable on each run as soon as it is sure this option is not needed
         allowImportOnEmptyDatabase = false;
 
-        Instant earliestFetchTimestamp = (latestImportedFetchTimestamp != null)
-            ? latestImportedFetchTimestamp.plusSeconds(1)
+        // writes of previous chunk may still be pending, continue after last
+        // submitted data file
+        Instant earliestFetchTimestamp = (latestSubmittedFetchTimestamp != null)
+            ? latestSubmittedFetchTimestamp.plusSeconds(1)
             : earliestFetchTimestampEmptyDatabase;
-        Instant latestFetchTimestamp = Instant.MAX;
-
-        // request and parse data from archive
-        // TODO: support JSON v3
-        CompletableFuture<List<ParsedDataFile>> futureDataFiles = archiveClient
-            .request(packerMethod, earliestFetchTimestamp, latestFetchTimestamp, fileLimit, asList("legacy"))
-            .thenApply(files -> {
-                return files
-                    .stream()
-                    .parallel()
-                    .map(ParsedDataFile::new)
-                    .sequential()
-                    .sorted(Comparator.comparing(ParsedDataFile::getFetchTime))
-                    .collect(Collectors.toList());
-            });
+
+        // request and parse data from archive (may already have been prefetched)
+        CompletableFuture<List<ParsedDataFile>> futureDataFiles = prefetcher.request(earliestFetchTimestamp, remainingFilesBeforeRestart);
 
         // load partial graph from DB if not already loaded
         GraphIndex graphIndex = graphImport.getIndex();
@@ -130,12 +137,12 @@ public class StatusImport {
             LOGGER.error(
                 "{} dirty entities found before import: {} connections, {} facilities, {} flights, {} flight plans, {} reports, {} track points",
                 dirtyEntitiesBeforeImport,
-                tracker.getDirtyEntities(RelationalConnection.class).size(),
-                tracker.getDirtyEntities(RelationalFacility.class).size(),
-                tracker.getDirtyEntities(RelationalFlight.class).size(),
-                tracker.getDirtyEntities(RelationalFlightPlan.class).size(),
-                tracker.getDirtyEntities(RelationalReport.class).size(),
-                tracker.getDirtyEntities(RelationalTrackPoint.class).size() //
+                tracker.countDirtyEntities(RelationalConnection.class),
+                tracker.countDirtyEntities(RelationalFacility.class),
+                tracker.countDirtyEntities(RelationalFlight.class),
+                tracker.countDirtyEntities(RelationalFlightPlan.class),
+                tracker.countDirtyEntities(RelationalReport.class),
+                tracker.countDirtyEntities(RelationalTrackPoint.class) //
             );
             throw new RuntimeException(
                 dirtyEntitiesBeforeImport + " dirty entities after loading, expected clean state; aborting" //
@@ -149,8 +156,7 @@ public class StatusImport {
         } catch (InterruptedException | ExecutionException ex) {
             throw new RuntimeException(
                 "Failed to load/parse data from archive for chunk from " + earliestFetchTimestamp
-                    + " to " + latestFetchTimestamp
-                    + " (file limit " + fileLimit + ").",
+                    + " (" + remainingFilesBeforeRestart + " files remaining before restart).",
                 ex //
             );
         }
@@ -196,13 +202,19 @@ public class StatusImport {
 
         LOGGER.debug("graph import took {} ms", Duration.between(beforeImport, afterImport).toMillis());
 
-        // save dirty entities to database
+        // save dirty entities to database; writing may continue in background
+        // and only advances latest imported timestamp after commit
+        Instant latestFetchTimestamp = dataFiles.get(dataFiles.size() - 1).getFetchTime();
         Instant beforeSave = Instant.now();
-        database.saveDirtyEntities(tracker);
+        database.saveDirtyEntities(tracker, () -> {
+            latestImportedFetchTimestamp = latestFetchTimestamp;
+            LOGGER.debug("data files up to fetch time {} have been committed to database", latestFetchTimestamp);
+        });
         Instant afterSave = Instant.now();
         LOGGER.debug("saving took {} ms", Duration.between(beforeSave, afterSave).toMillis());
+        database.logConnectionPoolStatistics();
 
-        latestImportedFetchTimestamp = dataFiles.get(dataFiles.size() - 1).getFetchTime();
+        latestSubmittedFetchTimestamp = latestFetchTimestamp;
 
         /*
          * TODO: periodic clean up in DB - data from connections and m:n tables is only
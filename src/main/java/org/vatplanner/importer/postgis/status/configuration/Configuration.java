@@ -147,6 +147,20 @@ public class Configuration {
         setString(properties, "database.dbname", config::setDatabaseName);
         setString(properties, "database.schema", config::setSchema);
         setString(properties, "database.unixSocketPath", config::setUnixSocketPath);
+        setInteger(properties, "database.batchSize", config::setBatchSize);
+        setInteger(properties, "database.maxPendingRows", config::setMaxPendingRows);
+        setBoolean(properties, "database.bulkCopy", config::setBulkCopy);
+        setInteger(properties, "database.maxPendingCopyMegaBytes", config::setMaxPendingCopyMegaBytes);
+        setBoolean(properties, "database.asyncWrites", config::setAsyncWrites);
+        setBoolean(properties, "database.coalesceConnectionUpdates", config::setCoalesceConnectionUpdates);
+        setInteger(properties, "database.parallelLoadConnections", config::setParallelLoadConnections);
+        setInteger(properties, "database.fetchSize", config::setFetchSize);
+        setBoolean(properties, "database.cachePreselection", config::setCachePreselection);
+        setInteger(properties, "database.pool.maxSize", config::setPoolMaxSize);
+        setInteger(properties, "database.pool.maxIdleSeconds", config::setPoolMaxIdleSeconds);
+        setInteger(properties, "database.pool.maxLifetimeSeconds", config::setPoolMaxLifetimeSeconds);
+        setInteger(properties, "database.pool.validationTimeoutSeconds", config::setPoolValidationTimeoutSeconds);
+        setInteger(properties, "database.pool.borrowTimeoutSeconds", config::setPoolBorrowTimeoutSeconds);
 
         return config;
     }
@@ -172,6 +186,11 @@ public class Configuration {
         setInteger(properties, "import.maxFilesBeforeRestart", config::setMaxFilesBeforeRestart);
         setBoolean(properties, "import.allowEmptyDatabase", config::setAllowImportOnEmptyDatabase);
         setInstant(properties, "import.emptyDatabaseEarliestFetchTime", config::setEmptyDatabaseEarliestFetchTime);
+        setInteger(properties, "import.prefetchDepth", config::setPrefetchDepth);
+        setInteger(properties, "import.prefetchMaxHeapPercentage", config::setPrefetchMaxHeapPercentage);
+        setInteger(properties, "import.parserThreads", config::setParserThreads);
+        setInteger(properties, "import.parserQueueSize", config::setParserQueueSize);
+        setInteger(properties, "import.retainGraphMaxHeapPercentage", config::setRetainGraphMaxHeapPercentage);
 
         return config;
     }
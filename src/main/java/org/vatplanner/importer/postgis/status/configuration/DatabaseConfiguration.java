@@ -17,6 +17,20 @@ public class DatabaseConfiguration {
     private String databaseName;
     private String schema;
     private String unixSocketPath;
+    private int batchSize;
+    private int maxPendingRows;
+    private int maxPendingCopyMegaBytes;
+    private boolean bulkCopy;
+    private boolean asyncWrites;
+    private boolean coalesceConnectionUpdates;
+    private int parallelLoadConnections;
+    private int fetchSize;
+    private boolean cachePreselection;
+    private int poolMaxSize;
+    private int poolMaxIdleSeconds;
+    private int poolMaxLifetimeSeconds;
+    private int poolValidationTimeoutSeconds;
+    private int poolBorrowTimeoutSeconds;
 
     public String getHost() {
         return host;
@@ -92,4 +106,144 @@ public class DatabaseConfiguration {
         return this;
     }
 
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public DatabaseConfiguration setBatchSize(int batchSize) {
+        LOGGER.debug("setting batchSize to {}", batchSize);
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    public int getMaxPendingRows() {
+        return maxPendingRows;
+    }
+
+    public DatabaseConfiguration setMaxPendingRows(int maxPendingRows) {
+        LOGGER.debug("setting maxPendingRows to {}", maxPendingRows);
+        this.maxPendingRows = maxPendingRows;
+        return this;
+    }
+
+    public int getMaxPendingCopyMegaBytes() {
+        return maxPendingCopyMegaBytes;
+    }
+
+    public DatabaseConfiguration setMaxPendingCopyMegaBytes(int maxPendingCopyMegaBytes) {
+        LOGGER.debug("setting maxPendingCopyMegaBytes to {}", maxPendingCopyMegaBytes);
+        this.maxPendingCopyMegaBytes = maxPendingCopyMegaBytes;
+        return this;
+    }
+
+    public boolean isBulkCopy() {
+        return bulkCopy;
+    }
+
+    public DatabaseConfiguration setBulkCopy(boolean bulkCopy) {
+        LOGGER.debug("setting bulkCopy to {}", bulkCopy);
+        this.bulkCopy = bulkCopy;
+        return this;
+    }
+
+    public boolean isAsyncWrites() {
+        return asyncWrites;
+    }
+
+    public DatabaseConfiguration setAsyncWrites(boolean asyncWrites) {
+        LOGGER.debug("setting asyncWrites to {}", asyncWrites);
+        this.asyncWrites = asyncWrites;
+        return this;
+    }
+
+    public boolean isCoalesceConnectionUpdates() {
+        return coalesceConnectionUpdates;
+    }
+
+    public DatabaseConfiguration setCoalesceConnectionUpdates(boolean coalesceConnectionUpdates) {
+        LOGGER.debug("setting coalesceConnectionUpdates to {}", coalesceConnectionUpdates);
+        this.coalesceConnectionUpdates = coalesceConnectionUpdates;
+        return this;
+    }
+
+    public int getParallelLoadConnections() {
+        return parallelLoadConnections;
+    }
+
+    public DatabaseConfiguration setParallelLoadConnections(int parallelLoadConnections) {
+        LOGGER.debug("setting parallelLoadConnections to {}", parallelLoadConnections);
+        this.parallelLoadConnections = parallelLoadConnections;
+        return this;
+    }
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    public DatabaseConfiguration setFetchSize(int fetchSize) {
+        LOGGER.debug("setting fetchSize to {}", fetchSize);
+        this.fetchSize = fetchSize;
+        return this;
+    }
+
+    public boolean isCachePreselection() {
+        return cachePreselection;
+    }
+
+    public DatabaseConfiguration setCachePreselection(boolean cachePreselection) {
+        LOGGER.debug("setting cachePreselection to {}", cachePreselection);
+        this.cachePreselection = cachePreselection;
+        return this;
+    }
+
+    public int getPoolMaxSize() {
+        return poolMaxSize;
+    }
+
+    public DatabaseConfiguration setPoolMaxSize(int poolMaxSize) {
+        LOGGER.debug("setting poolMaxSize to {}", poolMaxSize);
+        this.poolMaxSize = poolMaxSize;
+        return this;
+    }
+
+    public int getPoolMaxIdleSeconds() {
+        return poolMaxIdleSeconds;
+    }
+
+    public DatabaseConfiguration setPoolMaxIdleSeconds(int poolMaxIdleSeconds) {
+        LOGGER.debug("setting poolMaxIdleSeconds to {}", poolMaxIdleSeconds);
+        this.poolMaxIdleSeconds = poolMaxIdleSeconds;
+        return this;
+    }
+
+    public int getPoolMaxLifetimeSeconds() {
+        return poolMaxLifetimeSeconds;
+    }
+
+    public DatabaseConfiguration setPoolMaxLifetimeSeconds(int poolMaxLifetimeSeconds) {
+        LOGGER.debug("setting poolMaxLifetimeSeconds to {}", poolMaxLifetimeSeconds);
+        this.poolMaxLifetimeSeconds = poolMaxLifetimeSeconds;
+        return this;
+    }
+
+    public int getPoolValidationTimeoutSeconds() {
+        return poolValidationTimeoutSeconds;
+    }
+
+    public DatabaseConfiguration setPoolValidationTimeoutSeconds(int poolValidationTimeoutSeconds) {
+        LOGGER.debug("setting poolValidationTimeoutSeconds to {}", poolValidationTimeoutSeconds);
+        this.poolValidationTimeoutSeconds = poolValidationTimeoutSeconds;
+        return this;
+    }
+
+    public int getPoolBorrowTimeoutSeconds() {
+        return poolBorrowTimeoutSeconds;
+    }
+
+    public DatabaseConfiguration setPoolBorrowTimeoutSeconds(int poolBorrowTimeoutSeconds) {
+        LOGGER.debug("setting poolBorrowTimeoutSeconds to {}", poolBorrowTimeoutSeconds);
+        this.poolBorrowTimeoutSeconds = poolBorrowTimeoutSeconds;
+        return this;
+    }
+
 }
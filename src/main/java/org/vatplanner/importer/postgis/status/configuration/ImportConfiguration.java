@@ -16,6 +16,11 @@ public class ImportConfiguration {
     private int maxFilesBeforeRestart;
     private boolean allowImportOnEmptyDatabase;
     private Instant emptyDatabaseEarliestFetchTime;
+    private int prefetchDepth;
+    private int prefetchMaxHeapPercentage;
+    private int parserThreads;
+    private int parserQueueSize;
+    private int retainGraphMaxHeapPercentage;
 
     public int getMaxFilesPerChunk() {
         return maxFilesPerChunk;
@@ -57,4 +62,54 @@ public class ImportConfiguration {
         return this;
     }
 
+    public int getPrefetchDepth() {
+        return prefetchDepth;
+    }
+
+    public ImportConfiguration setPrefetchDepth(int prefetchDepth) {
+        LOGGER.debug("setting prefetchDepth to {}", prefetchDepth);
+        this.prefetchDepth = prefetchDepth;
+        return this;
+    }
+
+    public int getPrefetchMaxHeapPercentage() {
+        return prefetchMaxHeapPercentage;
+    }
+
+    public ImportConfiguration setPrefetchMaxHeapPercentage(int prefetchMaxHeapPercentage) {
+        LOGGER.debug("setting prefetchMaxHeapPercentage to {}", prefetchMaxHeapPercentage);
+        this.prefetchMaxHeapPercentage = prefetchMaxHeapPercentage;
+        return this;
+    }
+
+    public int getParserThreads() {
+        return parserThreads;
+    }
+
+    public ImportConfiguration setParserThreads(int parserThreads) {
+        LOGGER.debug("setting parserThreads to {}", parserThreads);
+        this.parserThreads = parserThreads;
+        return this;
+    }
+
+    public int getParserQueueSize() {
+        return parserQueueSize;
+    }
+
+    public ImportConfiguration setParserQueueSize(int parserQueueSize) {
+        LOGGER.debug("setting parserQueueSize to {}", parserQueueSize);
+        this.parserQueueSize = parserQueueSize;
+        return this;
+    }
+
+    public int getRetainGraphMaxHeapPercentage() {
+        return retainGraphMaxHeapPercentage;
+    }
+
+    public ImportConfiguration setRetainGraphMaxHeapPercentage(int retainGraphMaxHeapPercentage) {
+        LOGGER.debug("setting retainGraphMaxHeapPercentage to {}", retainGraphMaxHeapPercentage);
+        this.retainGraphMaxHeapPercentage = retainGraphMaxHeapPercentage;
+        return this;
+    }
+
 }
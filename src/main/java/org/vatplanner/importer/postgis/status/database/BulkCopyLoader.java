@@ -0,0 +1,134 @@
+package org.vatplanner.importer.postgis.status.database;
+
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.vatplanner.dataformats.vatsimpublic.entities.status.FlightEvent;
+import org.vatplanner.importer.postgis.status.entities.RelationalFlight;
+import org.vatplanner.importer.postgis.status.entities.RelationalTrackPoint;
+import org.vatplanner.importer.postgis.status.utils.ExceptionalBiConsumer;
+
+/**
+ * Writes append-only entities using <code>COPY ... FROM STDIN</code> which is
+ * significantly faster than individual or batched <code>INSERT</code>s.
+ *
+ * <p>
+ * Rows are encoded immediately while the actual <code>COPY</code> operations
+ * are added to {@link PendingWrites}.
+ * </p>
+ */
+public class BulkCopyLoader {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BulkCopyLoader.class);
+
+    /**
+     * Encodes all given track points to be copied to database and marks them
+     * clean.
+     *
+     * @param writes pending writes to add the operation to
+     * @param trackPoints track points to persist
+     * @throws Exception if encoding fails
+     */
+    public void copyTrackPoints(PendingWrites writes, Collection<RelationalTrackPoint> trackPoints) throws Exception {
+        copy(writes, RelationalTrackPoint.SQL_COPY, trackPoints, RelationalTrackPoint::encodeCopyRow);
+
+        trackPoints.forEach(RelationalTrackPoint::markClean);
+    }
+
+    /**
+     * Encodes all events of the given flights to be copied to database. Flights
+     * are expected to have been persisted before. Since events may already have
+     * been recorded previously, rows are copied to a temporary table first and
+     * then inserted while ignoring conflicts. Flights are marked clean after all
+     * events have been encoded.
+     *
+     * @param writes pending writes to add the operations to
+     * @param flights flights whose events should be persisted
+     * @param flightEvents cache to resolve IDs of flight events
+     * @throws Exception if encoding fails
+     */
+    public void copyFlightEvents(PendingWrites writes, Collection<RelationalFlight> flights, StrictEnumCache<FlightEvent> flightEvents) throws Exception {
+        writes.addAction(db -> {
+            try (Statement stmt = db.createStatement()) {
+                stmt.execute(""
+                    + "CREATE TEMPORARY TABLE _copy_trackpoints_flightevents ( "
+                    + "    flight_id INT, "
+                    + "    report_id INT, "
+                    + "    flightevent_id INT "
+                    + ") ");
+            }
+        });
+
+        copy(
+            writes,
+            "COPY _copy_trackpoints_flightevents (flight_id, report_id, flightevent_id) FROM STDIN",
+            flights,
+            (flight, stream) -> flight.encodeEventCopyRows(stream, flightEvents) //
+        );
+
+        writes.addAction(db -> {
+            try (Statement stmt = db.createStatement()) {
+                stmt.execute(""
+                    + "INSERT INTO trackpoints_flightevents (flight_id, report_id, flightevent_id) "
+                    + "SELECT flight_id, report_id, flightevent_id "
+                    + "FROM _copy_trackpoints_flightevents "
+                    + "ON CONFLICT DO NOTHING ");
+
+                stmt.execute("DROP TABLE _copy_trackpoints_flightevents");
+            }
+        });
+
+        flights.forEach(RelationalFlight::markClean);
+    }
+
+    private <T> void copy(PendingWrites writes, String sql, Collection<T> elements, ExceptionalBiConsumer<T, CopyStream> encoder) throws Exception {
+        // streams are handed over as soon as they reach the pending rows or bytes
+        // limit so that encoded rows of a whole chunk are not held in memory all at
+        // once
+        CopyStream stream = new CopyStream(sql);
+        try {
+            for (T element : elements) {
+                encoder.accept(element, stream);
+
+                boolean isFull = (stream.getNumRows() >= writes.getRemainingRows())
+                    || (stream.getBufferedBytes() >= writes.getRemainingBytes());
+                if (isFull) {
+                    CopyStream fullStream = stream;
+                    stream = null;
+                    addCopy(writes, sql, fullStream);
+                    stream = new CopyStream(sql);
+                }
+            }
+
+            if (stream.getNumRows() > 0) {
+                CopyStream lastStream = stream;
+                stream = null;
+                addCopy(writes, sql, lastStream);
+            }
+        } finally {
+            // streams not handed over to pending writes would never be released
+            if (stream != null) {
+                stream.discard();
+            }
+        }
+    }
+
+    private void addCopy(PendingWrites writes, String sql, CopyStream stream) throws Exception {
+        writes.addAction(db -> {
+            Instant start = Instant.now();
+
+            long numRows = stream.copyTo(db);
+
+            Instant end = Instant.now();
+            long millis = Duration.between(start, end).toMillis();
+            LOGGER.debug(
+                "copied {} rows in {}ms ({} rows/s): {}",
+                numRows, millis, (millis > 0) ? (numRows * 1000 / millis) : numRows, sql //
+            );
+        }, stream.getNumRows(), stream.getBufferedBytes(), stream::discard);
+    }
+}
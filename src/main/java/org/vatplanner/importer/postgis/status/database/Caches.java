@@ -7,36 +7,54 @@ import org.vatplanner.dataformats.vatsimpublic.entities.status.FlightEvent;
 
 public class Caches {
 
+    private PreparedStatementCache statements;
+    private PendingWrites writes;
     private DeduplicationCache fetchNodes;
     private DeduplicationCache fetchUrls;
     private StrictEnumCache<FlightEvent> flightEvents;
 
-    public Caches(Connection db) throws SQLException {
-        fetchNodes = new DeduplicationCache(
-            db,
-            "SELECT fetchnode_id FROM fetchnodes WHERE \"name\"=?",
-            "INSERT INTO fetchnodes (\"name\") VALUES (?) RETURNING fetchnode_id" //
-        );
+    public Caches(Connection db, int batchSize, int maxPendingRows, long maxPendingBytes, DeduplicationCache fetchNodes, DeduplicationCache fetchUrls, StrictEnumCache<FlightEvent> flightEvents) throws SQLException {
+        statements = new PreparedStatementCache(db);
+        writes = new PendingWrites(db, statements, batchSize, maxPendingRows, maxPendingBytes);
 
-        fetchUrls = new DeduplicationCache(
-            db,
-            "SELECT fetchurl_id FROM fetchurls WHERE \"url\"=?",
-            "INSERT INTO fetchurls (\"url\") VALUES (?) RETURNING fetchurl_id" //
-        );
+        this.fetchNodes = fetchNodes;
+        fetchNodes.begin(statements);
 
-        flightEvents = new StrictEnumCache<>(
-            db,
-            "SELECT flightevent_id, eventname FROM flightevents",
-            name -> FlightEvent.valueOf(name.toUpperCase()) //
-        );
+        this.fetchUrls = fetchUrls;
+        fetchUrls.begin(statements);
+
+        this.flightEvents = flightEvents;
+    }
+
+    /**
+     * Confirms that the transaction has been committed, so values inserted to
+     * long-lived caches remain valid.
+     */
+    public void commit() {
+        fetchNodes.commit();
+        fetchUrls.commit();
     }
 
     public void evict() {
+        writes.close();
+        writes = null;
+        fetchNodes.end();
         fetchNodes = null;
+        fetchUrls.end();
         fetchUrls = null;
+        statements.close();
+        statements = null;
         flightEvents = null;
     }
 
+    public PreparedStatementCache getStatements() {
+        return statements;
+    }
+
+    public PendingWrites getWrites() {
+        return writes;
+    }
+
     public DeduplicationCache getFetchNodes() {
         return fetchNodes;
     }
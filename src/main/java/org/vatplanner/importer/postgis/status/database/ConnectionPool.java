@@ -0,0 +1,337 @@
+package org.vatplanner.importer.postgis.status.database;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A small, bounded pool of database connections.
+ *
+ * <p>
+ * Idle connections are validated before being handed out again. Connections
+ * exceeding their maximum lifetime or having been idle for too long are closed
+ * instead of being reused; connections in use are never closed by the pool, so
+ * an expired lifetime only takes effect when the connection is released. If all
+ * connections are in use, callers wait until a connection is released or the
+ * configured timeout is reached.
+ * </p>
+ *
+ * <p>
+ * Connections are established, validated and closed without holding the lock
+ * of the pool, so slow network operations of one caller do not block others
+ * from borrowing or releasing connections.
+ * </p>
+ */
+public class ConnectionPool {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConnectionPool.class);
+
+    private final String url;
+    private final Properties properties;
+
+    private final int maxSize;
+    private final long maxIdleNanos;
+    private final long maxLifetimeNanos;
+    private final int validationTimeoutSeconds;
+    private final long borrowTimeoutNanos;
+
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    private final Map<Connection, PooledConnection> active = new IdentityHashMap<>();
+
+    // connections being established or validated outside the lock
+    private int numReserved = 0;
+    private boolean isClosed = false;
+
+    private int numBorrowed = 0;
+    private int numCreated = 0;
+    private int numEvicted = 0;
+    private long totalWaitNanos = 0;
+    private long maxWaitNanos = 0;
+
+    private static class PooledConnection {
+        private final Connection connection;
+        private final long createdNanos;
+        private long releasedNanos;
+
+        private PooledConnection(Connection connection) {
+            this.connection = connection;
+            this.createdNanos = System.nanoTime();
+            this.releasedNanos = createdNanos;
+        }
+    }
+
+    /**
+     * Creates a new pool. Connections are only established on demand.
+     *
+     * @param url JDBC URL to connect to
+     * @param properties connection properties
+     * @param maxSize maximum number of connections (active and idle)
+     * @param maxIdleTime maximum time a connection may remain idle before being
+     *        closed
+     * @param maxLifetime maximum time a connection may be reused, counted since
+     *        establishing the connection; connections in use are closed when
+     *        they get released after expiry
+     * @param validationTimeout maximum time to wait for validation of an idle
+     *        connection
+     * @param borrowTimeout maximum time to wait for a connection to become
+     *        available if the pool is exhausted
+     */
+    public ConnectionPool(String url, Properties properties, int maxSize, Duration maxIdleTime, Duration maxLifetime, Duration validationTimeout, Duration borrowTimeout) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("pool size must be at least 1, got " + maxSize);
+        }
+
+        this.url = url;
+        this.properties = properties;
+        this.maxSize = maxSize;
+        this.maxIdleNanos = maxIdleTime.toNanos();
+        this.maxLifetimeNanos = maxLifetime.toNanos();
+        this.validationTimeoutSeconds = (int) Long.max(1, validationTimeout.getSeconds());
+        this.borrowTimeoutNanos = borrowTimeout.toNanos();
+    }
+
+    /**
+     * Returns a connection from the pool. The connection has to be returned by
+     * calling {@link #release(Connection)} and must not be closed by the caller.
+     *
+     * @return connection in auto-commit mode
+     * @throws SQLException if no connection could be established or the pool
+     *         remained exhausted until timeout
+     * @throws InterruptedException if interrupted while waiting for a connection
+     */
+    public Connection borrow() throws SQLException, InterruptedException {
+        long start = System.nanoTime();
+        long deadline = start + borrowTimeoutNanos;
+
+        while (true) {
+            PooledConnection pooled = reserve(deadline);
+
+            if (pooled != null) {
+                if (isValid(pooled)) {
+                    return activate(pooled, start);
+                }
+
+                LOGGER.debug("idle connection failed validation, closing");
+                close(pooled);
+                unreserve();
+                continue;
+            }
+
+            try {
+                pooled = new PooledConnection(DriverManager.getConnection(url, properties));
+            } catch (SQLException ex) {
+                unreserve();
+                throw ex;
+            }
+
+            synchronized (this) {
+                numCreated++;
+            }
+
+            return activate(pooled, start);
+        }
+    }
+
+    /**
+     * Reserves a slot of the pool for the caller, waiting until one becomes
+     * available. An idle connection is taken if available, otherwise the caller
+     * is allowed to establish a new connection.
+     *
+     * @param deadline {@link System#nanoTime()} to wait until
+     * @return idle connection to validate; null if a new connection should be
+     *         established
+     * @throws SQLException if the pool is closed or remained exhausted until
+     *         timeout
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private PooledConnection reserve(long deadline) throws SQLException, InterruptedException {
+        List<PooledConnection> expired;
+        PooledConnection pooled;
+
+        synchronized (this) {
+            while (true) {
+                if (isClosed) {
+                    throw new SQLException("connection pool has been closed");
+                }
+
+                expired = removeExpired();
+
+                pooled = idle.pollFirst();
+                if ((pooled != null) || (active.size() + numReserved < maxSize)) {
+                    numReserved++;
+                    break;
+                }
+
+                long remainingNanos = deadline - System.nanoTime();
+                if (remainingNanos <= 0) {
+                    throw new SQLException(
+                        "timeout waiting for a database connection, all " + maxSize + " connections are in use" //
+                    );
+                }
+
+                wait(Long.max(1, remainingNanos / 1000000));
+            }
+        }
+
+        expired.forEach(this::close);
+
+        return pooled;
+    }
+
+    private synchronized void unreserve() {
+        numReserved--;
+        notifyAll();
+    }
+
+    private synchronized Connection activate(PooledConnection pooled, long borrowStartNanos) {
+        numReserved--;
+        active.put(pooled.connection, pooled);
+
+        long waitNanos = System.nanoTime() - borrowStartNanos;
+        numBorrowed++;
+        totalWaitNanos += waitNanos;
+        maxWaitNanos = Long.max(maxWaitNanos, waitNanos);
+
+        return pooled.connection;
+    }
+
+    /**
+     * Returns a previously borrowed connection to the pool. Open transactions are
+     * rolled back and auto-commit is restored. Connections which cannot be reset,
+     * have exceeded their maximum lifetime or are released after the pool has been
+     * closed are closed.
+     *
+     * @param connection connection to return
+     */
+    public void release(Connection connection) {
+        PooledConnection pooled;
+        synchronized (this) {
+            pooled = active.remove(connection);
+        }
+
+        if (pooled == null) {
+            throw new IllegalArgumentException("connection does not belong to this pool");
+        }
+
+        boolean isReusable;
+        try {
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+
+            isReusable = (System.nanoTime() - pooled.createdNanos) <= maxLifetimeNanos;
+        } catch (SQLException ex) {
+            LOGGER.warn("failed to reset released connection, closing", ex);
+            isReusable = false;
+        }
+
+        boolean isKept = false;
+        synchronized (this) {
+            if (!isReusable) {
+                numEvicted++;
+            } else if (!isClosed) {
+                pooled.releasedNanos = System.nanoTime();
+                idle.addFirst(pooled);
+                isKept = true;
+            }
+
+            notifyAll();
+        }
+
+        if (!isKept) {
+            close(pooled);
+        }
+    }
+
+    private boolean isValid(PooledConnection pooled) {
+        try {
+            return pooled.connection.isValid(validationTimeoutSeconds);
+        } catch (SQLException ex) {
+            LOGGER.debug("connection validation failed", ex);
+            return false;
+        }
+    }
+
+    private List<PooledConnection> removeExpired() {
+        List<PooledConnection> expired = new ArrayList<>();
+        long now = System.nanoTime();
+
+        Iterator<PooledConnection> it = idle.iterator();
+        while (it.hasNext()) {
+            PooledConnection pooled = it.next();
+
+            boolean isIdleExpired = (now - pooled.releasedNanos) > maxIdleNanos;
+            boolean isLifetimeExpired = (now - pooled.createdNanos) > maxLifetimeNanos;
+            if (isIdleExpired || isLifetimeExpired) {
+                it.remove();
+                expired.add(pooled);
+                numEvicted++;
+            }
+        }
+
+        return expired;
+    }
+
+    private void close(PooledConnection pooled) {
+        try {
+            pooled.connection.close();
+        } catch (SQLException ex) {
+            LOGGER.warn("failed to close pooled connection", ex);
+        }
+    }
+
+    /**
+     * Closes all idle connections and stops handing out connections. Connections
+     * still in use are closed when they are released.
+     */
+    public void close() {
+        List<PooledConnection> closing;
+        int numActive;
+        synchronized (this) {
+            isClosed = true;
+            closing = new ArrayList<>(idle);
+            idle.clear();
+            numActive = active.size();
+            notifyAll();
+        }
+
+        LOGGER.debug("closing {} idle connections, {} still in use", closing.size(), numActive);
+
+        closing.forEach(this::close);
+    }
+
+    /**
+     * Logs current usage of the pool and statistics collected since the last call.
+     */
+    public synchronized void logStatistics() {
+        LOGGER.debug(
+            "connection pool: {} active, {} idle, {} borrowed (waited {}ms total, {}ms max), {} created, {} evicted",
+            active.size(),
+            idle.size(),
+            numBorrowed,
+            totalWaitNanos / 1000000,
+            maxWaitNanos / 1000000,
+            numCreated,
+            numEvicted //
+        );
+
+        numBorrowed = 0;
+        numCreated = 0;
+        numEvicted = 0;
+        totalWaitNanos = 0;
+        maxWaitNanos = 0;
+    }
+}
@@ -0,0 +1,377 @@
+package org.vatplanner.importer.postgis.status.database;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.util.ByteBufferByteStreamWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Encodes rows in PostgreSQL's text format for a <code>COPY ... FROM
+ * STDIN</code> operation. Rows are encoded to blocks held in memory and only
+ * sent to the server when calling {@link #copyTo(Connection)}, so encoding and
+ * writing may happen at different times.
+ *
+ * <p>
+ * Encoded rows are appended to direct {@link ByteBuffer}s allocated outside of
+ * the Java heap, so large amounts of pending rows neither add to heap usage nor
+ * to garbage collection while they wait to be written. Blocks are streamed to
+ * the server directly and returned to a shared pool afterwards.
+ * </p>
+ *
+ * <p>
+ * Direct memory is only freed by garbage collection, so released blocks are
+ * kept in the pool and new blocks are only allocated if the pool is empty. The
+ * total amount of direct memory allocated thus never exceeds the peak amount
+ * held by streams at the same time, which callers have to bound by splitting
+ * rows to multiple streams (see {@link #getBufferedBytes()}). Streams which
+ * are not copied have to be discarded to release their blocks. The pool should
+ * be trimmed after each transaction by calling {@link #trimPool()}, so memory
+ * is handed back once less is needed.
+ * </p>
+ *
+ * <p>
+ * Columns of a row have to be appended in the same order as specified by the
+ * <code>COPY</code> statement, each row has to be terminated by calling
+ * {@link #endRow()}.
+ * </p>
+ */
+public class CopyStream {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CopyStream.class);
+
+    private static final int BLOCK_SIZE_CHARACTERS = 64 * 1024;
+    private static final int BLOCK_SIZE_BYTES = 256 * 1024;
+
+    // direct buffers are expensive to allocate, unused blocks are shared by all streams
+    private static final Deque<ByteBuffer> POOLED_BLOCKS = new ArrayDeque<>();
+
+    // guarded by POOLED_BLOCKS
+    private static int numBlocksInUse = 0;
+    private static int peakBlocksInUse = 0;
+
+    private static final char COLUMN_SEPARATOR = '\t';
+    private static final char ROW_SEPARATOR = '\n';
+    private static final String NULL_VALUE = "\\N";
+
+    private static final int SRID_WGS84 = 4326;
+
+    private final String sql;
+    private final List<ByteBuffer> blocks = new ArrayList<>();
+    private final StringBuilder sb = new StringBuilder(BLOCK_SIZE_CHARACTERS + 1024);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    private boolean isFirstColumn = true;
+    private boolean isReleased = false;
+    private long numRows = 0;
+
+    /**
+     * Prepares a new <code>COPY ... FROM STDIN</code> operation.
+     *
+     * @param sql <code>COPY</code> statement using default text format
+     */
+    public CopyStream(String sql) {
+        this.sql = sql;
+    }
+
+    private void startColumn() {
+        if (!isFirstColumn) {
+            sb.append(COLUMN_SEPARATOR);
+        }
+
+        isFirstColumn = false;
+    }
+
+    public CopyStream appendNull() {
+        startColumn();
+        sb.append(NULL_VALUE);
+        return this;
+    }
+
+    public CopyStream appendInt(int value) {
+        startColumn();
+        sb.append(value);
+        return this;
+    }
+
+    /**
+     * Appends the given value or <code>NULL</code> if the value is negative.
+     *
+     * @param value value to append; negative for <code>NULL</code>
+     * @return this instance for method-chaining
+     */
+    public CopyStream appendNullIfNegative(int value) {
+        if (value < 0) {
+            return appendNull();
+        }
+
+        return appendInt(value);
+    }
+
+    /**
+     * Appends the given text, escaping all characters with special meaning to
+     * <code>COPY</code>.
+     *
+     * @param value text to append; null for <code>NULL</code>
+     * @return this instance for method-chaining
+     */
+    public CopyStream appendText(String value) {
+        if (value == null) {
+            return appendNull();
+        }
+
+        startColumn();
+
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char ch = value.charAt(i);
+            switch (ch) {
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+
+                case '\t':
+                    sb.append("\\t");
+                    break;
+
+                case '\n':
+                    sb.append("\\n");
+                    break;
+
+                case '\r':
+                    sb.append("\\r");
+                    break;
+
+                default:
+                    sb.append(ch);
+            }
+        }
+
+        return this;
+    }
+
+    /**
+     * Appends a 3-dimensional WGS84 point encoded as EWKT, suitable to be read by
+     * PostGIS as geometry or geography.
+     *
+     * @param x X coordinate (longitude)
+     * @param y Y coordinate (latitude)
+     * @param z Z coordinate (altitude)
+     * @return this instance for method-chaining
+     */
+    public CopyStream appendPointZ(double x, double y, double z) {
+        startColumn();
+
+        sb.append("SRID=")
+            .append(SRID_WGS84)
+            .append(";POINT Z(")
+            .append(x)
+            .append(' ')
+            .append(y)
+            .append(' ')
+            .append(z)
+            .append(')');
+
+        return this;
+    }
+
+    /**
+     * Terminates the current row.
+     */
+    public void endRow() {
+        sb.append(ROW_SEPARATOR);
+        isFirstColumn = true;
+        numRows++;
+
+        if (sb.length() >= BLOCK_SIZE_CHARACTERS) {
+            completeBlock();
+        }
+    }
+
+    private void completeBlock() {
+        if (sb.length() == 0) {
+            return;
+        }
+
+        // rows are never split across characters, so each round can be encoded as
+        // complete input
+        CharBuffer input = CharBuffer.wrap(sb);
+        encoder.reset();
+        ByteBuffer block = blocks.isEmpty() ? appendBlock() : blocks.get(blocks.size() - 1);
+        CoderResult result;
+        while ((result = encoder.encode(input, block, true)).isOverflow()) {
+            block = appendBlock();
+        }
+        throwIfError(result);
+        while ((result = encoder.flush(block)).isOverflow()) {
+            block = appendBlock();
+        }
+        throwIfError(result);
+
+        sb.setLength(0);
+    }
+
+    private void throwIfError(CoderResult result) {
+        if (result.isError()) {
+            throw new IllegalArgumentException("failed to encode rows for COPY: " + result);
+        }
+    }
+
+    private ByteBuffer appendBlock() {
+        ByteBuffer block;
+        synchronized (POOLED_BLOCKS) {
+            block = POOLED_BLOCKS.pollFirst();
+            numBlocksInUse++;
+            peakBlocksInUse = Integer.max(peakBlocksInUse, numBlocksInUse);
+        }
+
+        if (block == null) {
+            block = ByteBuffer.allocateDirect(BLOCK_SIZE_BYTES);
+        }
+
+        blocks.add(block);
+
+        return block;
+    }
+
+    /**
+     * Returns all blocks to the pool. The stream cannot be used afterwards.
+     */
+    private void release() {
+        if (isReleased) {
+            return;
+        }
+
+        isReleased = true;
+
+        synchronized (POOLED_BLOCKS) {
+            for (ByteBuffer block : blocks) {
+                block.clear();
+                POOLED_BLOCKS.addFirst(block);
+            }
+            numBlocksInUse -= blocks.size();
+        }
+
+        blocks.clear();
+    }
+
+    /**
+     * Releases all memory held by the stream without running the operation. Has
+     * no effect if the stream has already been copied or discarded. The stream
+     * cannot be used afterwards.
+     */
+    public void discard() {
+        release();
+    }
+
+    /**
+     * Shrinks the pool to the number of blocks which have been in use at peak
+     * since the pool has last been trimmed. Blocks removed from the pool are left
+     * to garbage collection, which frees their direct memory. Should be called
+     * after each transaction, so the pool only holds as much memory as recent
+     * transactions needed.
+     */
+    public static void trimPool() {
+        int numTrimmed = 0;
+        int numPooled;
+        synchronized (POOLED_BLOCKS) {
+            int maxPooledBlocks = peakBlocksInUse - numBlocksInUse;
+            while (POOLED_BLOCKS.size() > maxPooledBlocks) {
+                // least recently used blocks are at the end
+                POOLED_BLOCKS.removeLast();
+                numTrimmed++;
+            }
+            numPooled = POOLED_BLOCKS.size();
+
+            peakBlocksInUse = numBlocksInUse;
+        }
+
+        if (numTrimmed > 0) {
+            LOGGER.debug("trimmed {} blocks from COPY buffer pool, {} blocks remain pooled", numTrimmed, numPooled);
+        }
+    }
+
+    /**
+     * Returns the number of rows encoded so far.
+     *
+     * @return number of encoded rows
+     */
+    public long getNumRows() {
+        return numRows;
+    }
+
+    /**
+     * Returns the amount of memory held by the stream: all blocks of direct memory
+     * plus characters which have not been encoded yet.
+     *
+     * @return number of bytes held by the stream
+     */
+    public long getBufferedBytes() {
+        return ((long) blocks.size() * BLOCK_SIZE_BYTES) + sb.length();
+    }
+
+    /**
+     * Runs the operation, sending all encoded rows to the server. The operation
+     * is aborted if sending fails, no rows will be persisted in that case. All
+     * memory held by the stream is released afterwards, so the operation can
+     * only be run once.
+     *
+     * @param db database connection
+     * @return number of rows reported by the server
+     * @throws SQLException if the operation fails
+     */
+    public long copyTo(Connection db) throws SQLException {
+        if (isReleased) {
+            throw new IllegalStateException("stream has already been copied");
+        }
+
+        if (!isFirstColumn) {
+            throw new IllegalStateException("last row has not been terminated");
+        }
+
+        completeBlock();
+
+        long numCopied;
+        try {
+            CopyIn copyIn = db.unwrap(PGConnection.class).getCopyAPI().copyIn(sql);
+            try {
+                for (ByteBuffer block : blocks) {
+                    ByteBuffer content = block.duplicate();
+                    content.flip();
+                    copyIn.writeToCopy(new ByteBufferByteStreamWriter(content));
+                }
+
+                numCopied = copyIn.endCopy();
+            } catch (SQLException ex) {
+                if (copyIn.isActive()) {
+                    copyIn.cancelCopy();
+                }
+
+                throw ex;
+            }
+        } finally {
+            release();
+        }
+
+        if (numCopied != numRows) {
+            throw new RuntimeException("COPY reported " + numCopied + " rows but " + numRows + " have been sent");
+        }
+
+        return numCopied;
+    }
+}
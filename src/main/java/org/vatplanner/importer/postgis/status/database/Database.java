@@ -1,9 +1,6 @@
 package org.vatplanner.importer.postgis.status.database;
 
-import static org.vatplanner.importer.postgis.status.utils.TimeHelpers.isBetween;
-
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -11,15 +8,30 @@ import java.sql.Statement;
 import java.sql.Timestamp;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Properties;
+import java.util.Set;
 import java.util.SortedSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Predicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import javax.sql.rowset.CachedRowSet;
 
 import org.newsclub.net.unix.socketfactory.PostgresqlAFUNIXSocketFactory;
 import org.postgresql.util.PGInterval;
@@ -37,6 +49,8 @@ import org.vatplanner.dataformats.vatsimpublic.entities.status.StatusEntityFacto
 import org.vatplanner.dataformats.vatsimpublic.graph.GraphIndex;
 import org.vatplanner.importer.postgis.status.DirtyEntityTracker;
 import org.vatplanner.importer.postgis.status.configuration.DatabaseConfiguration;
+import org.vatplanner.importer.postgis.status.database.PendingWrites.ExpectedRows;
+import org.vatplanner.importer.postgis.status.entities.DirtyMark;
 import org.vatplanner.importer.postgis.status.entities.RelationalConnection;
 import org.vatplanner.importer.postgis.status.entities.RelationalFacility;
 import org.vatplanner.importer.postgis.status.entities.RelationalFlight;
@@ -46,7 +60,6 @@ import org.vatplanner.importer.postgis.status.entities.RelationalTrackPoint;
 import org.vatplanner.importer.postgis.status.utils.ExceptionalBiConsumer;
 import org.vatplanner.importer.postgis.status.utils.ExceptionalConsumer;
 import org.vatplanner.importer.postgis.status.utils.ExceptionalRunnable;
-import org.vatplanner.importer.postgis.status.utils.ExceptionalTriConsumer;
 import org.vatplanner.importer.postgis.status.utils.Holder;
 import org.vatplanner.importer.postgis.status.utils.TimeHelpers;
 
@@ -54,14 +67,32 @@ import org.vatplanner.importer.postgis.status.utils.TimeHelpers;
  * Provides methods to save to and load from a PostGIS database.
  */
 public class Database {
-    // TODO: use connection pool
 
     private static final Logger LOGGER = LoggerFactory.getLogger(Database.class);
 
-    private final String url;
-    private final Properties properties;
+    private final ConnectionPool pool;
+    private final int batchSize;
+    private final int maxPendingRows;
+    private final long maxPendingBytes;
+    private final BulkCopyLoader bulkCopyLoader;
+    private final ExecutorService writer;
+    private final boolean coalesceConnectionUpdates;
+    private final int parallelLoadConnections;
+    private final int fetchSize;
+    private final PreselectionCache preselectionCache;
+
+    // deduplicated values are kept across transactions
+    private final DeduplicationCache fetchNodes = new DeduplicationCache("fetchnodes", "fetchnode_id", "name", "varchar");
+    private final DeduplicationCache fetchUrls = new DeduplicationCache("fetchurls", "fetchurl_id", "url", "text");
+
+    // flight events are static, read once by first transaction
+    private StrictEnumCache<FlightEvent> flightEvents;
+
+    // QNH of loaded track points; values are immutable and shared by all track points
+    private final Map<Integer, BarometricPressure> sharedQnhByCentiInchesOfMercury = new HashMap<>();
 
     private Caches caches;
+    private Future<?> pendingWrite;
 
     private static final FacilityType DUMMY_FACILITY_TYPE = FacilityType.CENTER;
     private static final int DUMMY_FACILITY_FREQUENCY_KILOHERTZ = 120000;
@@ -74,6 +105,10 @@ public class Database {
     private static final int PATTERN_POSTGIS_POINTZ_LATITUDE = 2;
     private static final int PATTERN_POSTGIS_POINTZ_Z = 3;
 
+    private static final String SQL_COALESCED_LAST_REPORT_UPDATE = "UPDATE connections c SET lastreport_id = v.lastreport_id "
+        + "FROM unnest(?::int[], ?::int[]) AS v (connection_id, lastreport_id) "
+        + "WHERE c.connection_id = v.connection_id";
+
     private static final Duration FLIGHT_PLAN_RETENTION_TIME = Duration.ofHours(2); // TODO: make configurable
 
     public Database(DatabaseConfiguration config) {
@@ -92,32 +127,93 @@ public class Database {
             urlBuilder.append(config.getUnixSocketPath());
         }
 
-        url = urlBuilder.toString();
-
-        properties = new Properties();
+        Properties properties = new Properties();
         properties.setProperty("user", config.getUsername());
         properties.setProperty("password", config.getPassword());
         properties.setProperty("currentSchema", config.getSchema() + ",public");
+
+        // allows the driver to combine batched inserts to multi-row statements
+        properties.setProperty("reWriteBatchedInserts", "true");
+
+        pool = new ConnectionPool(
+            urlBuilder.toString(),
+            properties,
+            config.getPoolMaxSize(),
+            Duration.ofSeconds(config.getPoolMaxIdleSeconds()),
+            Duration.ofSeconds(config.getPoolMaxLifetimeSeconds()),
+            Duration.ofSeconds(config.getPoolValidationTimeoutSeconds()),
+            Duration.ofSeconds(config.getPoolBorrowTimeoutSeconds()) //
+        );
+
+        batchSize = config.getBatchSize();
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batch size must be at least 1, got " + batchSize);
+        }
+
+        maxPendingRows = config.getMaxPendingRows();
+        if (maxPendingRows < batchSize) {
+            throw new IllegalArgumentException(
+                "maximum pending rows must be at least batch size (" + batchSize + "), got " + maxPendingRows //
+            );
+        }
+
+        int maxPendingCopyMegaBytes = config.getMaxPendingCopyMegaBytes();
+        if (maxPendingCopyMegaBytes < 1) {
+            throw new IllegalArgumentException(
+                "maximum pending COPY data must be at least 1 MB, got " + maxPendingCopyMegaBytes //
+            );
+        }
+        maxPendingBytes = (long) maxPendingCopyMegaBytes * 1024 * 1024;
+
+        bulkCopyLoader = config.isBulkCopy() ? new BulkCopyLoader() : null;
+        coalesceConnectionUpdates = config.isCoalesceConnectionUpdates();
+        parallelLoadConnections = config.getParallelLoadConnections();
+
+        fetchSize = config.getFetchSize();
+        if (fetchSize < 0) {
+            throw new IllegalArgumentException("fetch size must not be negative, got " + fetchSize);
+        }
+
+        preselectionCache = config.isCachePreselection() ? new PreselectionCache() : null;
+
+        writer = !config.isAsyncWrites() ? null : Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "database-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
     private Connection connect() {
         try {
-            return DriverManager.getConnection(url, properties);
-        } catch (SQLException ex) {
+            return pool.borrow();
+        } catch (SQLException | InterruptedException ex) {
             throw new RuntimeException("failed to connect to database", ex);
         }
     }
 
     private boolean withConnection(DatabaseAction action) {
-        try (Connection connection = connect()) {
+        Connection connection = null;
+        try {
+            connection = connect();
             action.run(connection);
             return true;
         } catch (Exception ex) {
             LOGGER.warn("caught exception while connected to DB", ex);
             return false;
+        } finally {
+            if (connection != null) {
+                pool.release(connection);
+            }
         }
     }
 
+    /**
+     * Logs usage statistics of the connection pool collected since last call.
+     */
+    public void logConnectionPoolStatistics() {
+        pool.logStatistics();
+    }
+
     private boolean performTransactional(DatabaseAction action) {
         final Holder<Boolean> success = new Holder<>(true);
 
@@ -144,6 +240,9 @@ public class Database {
                 try {
                     LOGGER.debug("committing transactional changes to DB");
                     connection.commit();
+                    if (caches != null) {
+                        caches.commit();
+                    }
                 } catch (SQLException ex) {
                     LOGGER.warn("commit to DB failed, trying to roll back", ex);
                     shouldCommit = false;
@@ -162,12 +261,20 @@ public class Database {
 
                 success.value = false;
             }
+
+            // caches are bound to the transaction and need to be released
+            // independent of its outcome
+            if (caches != null) {
+                evictCaches();
+            }
         });
 
         return success.value;
     }
 
     public Instant getLatestFetchTime() {
+        awaitPendingWrites();
+
         Holder<Instant> latestFetchTime = new Holder<>();
 
         withConnection(db -> {
@@ -183,45 +290,382 @@ public class Database {
         return latestFetchTime.value;
     }
 
+    /**
+     * Runs the given query and passes the result to a consumer. Inside
+     * transactions (auto-commit disabled) rows are streamed in chunks of the
+     * configured fetch size using a server-side cursor instead of reading the
+     * whole result into memory before it can be consumed.
+     *
+     * @param db connection to query
+     * @param sql query to run
+     * @param resultSetConsumer consumes the result
+     * @throws Exception if the query or consumer fails
+     */
     private void query(Connection db, String sql, ExceptionalConsumer<ResultSet, Exception> resultSetConsumer) throws Exception {
-        try (
-            Statement stmt = db.createStatement();
-            ResultSet rs = stmt.executeQuery(sql);) {
-            resultSetConsumer.accept(rs);
+        try (Statement stmt = db.createStatement()) {
+            stmt.setFetchSize(fetchSize);
+
+            try (ResultSet rs = stmt.executeQuery(sql)) {
+                resultSetConsumer.accept(rs);
+            }
+        }
+    }
+
+    private Integer[] queryIds(Connection db, String sql) throws Exception {
+        List<Integer> ids = new ArrayList<>();
+        query(db, sql, rs -> {
+            while (rs.next()) {
+                ids.add(rs.getInt(1));
+            }
+        });
+
+        return ids.toArray(new Integer[ids.size()]);
+    }
+
+    private void insertPreselectedIds(String name, Connection db, String sql, List<Integer> ids) throws SQLException {
+        executeBenchmarked(
+            name + " (" + ids.size() + " IDs)", db, sql,
+            ps -> ps.setArray(1, db.createArrayOf("integer", ids.toArray())) //
+        );
+    }
+
+    /**
+     * Records all entities of a completed load to the {@link PreselectionCache}.
+     *
+     * @param reports all loaded reports
+     * @param connections all loaded connections
+     * @param flights all loaded flights
+     */
+    private void recordLoadedEntities(Collection<RelationalReport> reports, Collection<RelationalConnection> connections, Collection<RelationalFlight> flights) {
+        for (RelationalReport report : reports) {
+            preselectionCache.recordReport(report.getDatabaseId(), report.getFetchTime(), report.getRecordTime());
         }
+
+        for (RelationalConnection connection : connections) {
+            recordConnection(connection);
+        }
+
+        for (RelationalFlight flight : flights) {
+            for (FlightPlan flightPlan : flight.getFlightPlans()) {
+                preselectionCache.recordFlightPlan(flight.getDatabaseId(), flightPlan.getReportFirstSeen().getRecordTime());
+            }
+        }
+    }
+
+    private void recordConnection(RelationalConnection connection) {
+        preselectionCache.recordConnection(
+            connection.getDatabaseId(),
+            connection.getFirstReport().getRecordTime(),
+            connection.getLastReport().getRecordTime() //
+        );
+    }
+
+    /**
+     * Result set of entities restricted to preselected IDs, either queried on
+     * demand or read concurrently in advance.
+     */
+    private interface PreselectedResultSet {
+        void consume(ExceptionalConsumer<ResultSet, Exception> resultSetConsumer) throws Exception;
+    }
+
+    /**
+     * Prepares a query restricted to preselected IDs. Without a
+     * {@link SnapshotReader} the query is run on demand on the given connection,
+     * restricted by a sub-query on temporary tables. Otherwise the query is
+     * submitted to be read concurrently, restricted to the given IDs.
+     *
+     * @param db connection of the loading transaction
+     * @param snapshotReader reader for concurrent reads; null to query on demand
+     * @param sql query to restrict, excluding any <code>WHERE</code> clause
+     * @param idColumn column to restrict by preselected IDs
+     * @param preselectionSql sub-query providing all preselected IDs
+     * @param preselectedIds all preselected IDs; only used for concurrent reads
+     * @return result set to be consumed
+     */
+    private PreselectedResultSet preselected(Connection db, SnapshotReader snapshotReader, String sql, String idColumn, String preselectionSql, Integer[] preselectedIds) {
+        if (snapshotReader == null) {
+            return resultSetConsumer -> query(
+                db,
+                sql + "WHERE " + idColumn + " IN (" + preselectionSql + ") ",
+                resultSetConsumer //
+            );
+        }
+
+        Future<CachedRowSet> future = snapshotReader.submit(
+            sql + "WHERE " + idColumn + " = ANY(?) ",
+            ps -> ps.setArray(1, ps.getConnection().createArrayOf("integer", preselectedIds)) //
+        );
+
+        return resultSetConsumer -> {
+            try (CachedRowSet rs = future.get()) {
+                resultSetConsumer.accept(rs);
+            }
+        };
     }
 
     private Instant toInstant(Timestamp timestamp) {
         return (timestamp != null) ? timestamp.toInstant() : null;
     }
 
-    public void saveDirtyEntities(DirtyEntityTracker tracker) {
+    /**
+     * Saves all dirty entities to database. Entities are staged on the calling
+     * thread: IDs are assigned, all values are bound to pending writes and entities
+     * are marked clean, so the graph may be modified again as soon as this method
+     * returns. If asynchronous writes are enabled, pending writes are then executed
+     * and committed on a dedicated writer thread, otherwise they are written
+     * before returning.
+     *
+     * <p>
+     * Writes are strictly performed in order; any previous writes are awaited
+     * before staging. The application exits if staging or writing fails as the
+     * graph is no longer consistent with the database in that case.
+     * </p>
+     *
+     * @param tracker tracker holding all dirty entities
+     * @param onCommit called after all entities have been committed to database
+     */
+    public void saveDirtyEntities(DirtyEntityTracker tracker, Runnable onCommit) {
+        awaitPendingWrites();
+
         int dirtyBefore = tracker.countDirtyEntities();
         LOGGER.debug("saving {} dirty entities to database", dirtyBefore);
 
-        boolean success = performTransactional(db -> {
+        Connection db = connect();
+        try {
+            db.setAutoCommit(false);
             initializeCaches(db);
+            stageDirtyEntities(db, tracker, dirtyBefore);
+        } catch (Exception ex) {
+            LOGGER.error("Staging entities for database failed; inconsistent state of graph. Exiting...", ex);
+            System.exit(1);
+        }
 
-            forEachWithCaches(db, tracker.getDirtyEntities(RelationalReport.class), RelationalReport::insert);
-            forEach(db, tracker.getDirtyEntities(RelationalConnection.class), RelationalConnection::upsert);
-            forEach(db, tracker.getDirtyEntities(RelationalFacility.class), RelationalFacility::insert);
-            forEachWithCaches(db, tracker.getDirtyEntities(RelationalFlight.class), RelationalFlight::insert);
-            forEach(db, tracker.getDirtyEntities(RelationalFlightPlan.class), RelationalFlightPlan::insert);
-            forEach(db, tracker.getDirtyEntities(RelationalTrackPoint.class), RelationalTrackPoint::insert);
-
-            int dirtyAfter = tracker.countDirtyEntities();
-            if (dirtyAfter > 0) {
-                LOGGER.error("{} entities remained dirty after saving ({} reported before), ", dirtyAfter, dirtyBefore);
-                throw new Exception("unexpected number of dirty entities remaining during sync to database");
+        Caches stagedCaches = caches;
+        caches = null;
+
+        if (writer == null) {
+            write(db, stagedCaches, onCommit);
+        } else {
+            pendingWrite = writer.submit(() -> write(db, stagedCaches, onCommit));
+        }
+    }
+
+    private void stageDirtyEntities(Connection db, DirtyEntityTracker tracker, int dirtyBefore) throws Exception {
+        Instant start = Instant.now();
+
+        // reports are only inserted, IDs are assigned in order of record time
+        List<RelationalReport> dirtyReports = new ArrayList<>(tracker.drain(RelationalReport.class));
+        for (RelationalReport report : dirtyReports) {
+            if (report.getDatabaseId() > 0) {
+                throw new UnsupportedOperationException("updating reports is not implemented");
             }
+        }
+        dirtyReports.sort(Comparator.comparing(RelationalReport::getRecordTime));
+
+        // resolve all deduplicated values at once instead of per report
+        Set<String> reportFetchNodes = new HashSet<>();
+        Set<String> reportFetchUrls = new HashSet<>();
+        for (RelationalReport report : dirtyReports) {
+            reportFetchNodes.add(report.getFetchNode());
+            reportFetchUrls.add(report.getFetchUrlRequested());
+            reportFetchUrls.add(report.getFetchUrlRetrieved());
+        }
+        fetchNodes.resolve(reportFetchNodes);
+        fetchUrls.resolve(reportFetchUrls);
+
+        insertWithAllocatedIds(
+            dirtyReports,
+            "reports", "report_id",
+            RelationalReport::setDatabaseId,
+            RelationalReport.SQL_INSERT,
+            (report, ps) -> report.bindInsert(ps, caches) //
+        );
+        if (preselectionCache != null) {
+            for (RelationalReport report : dirtyReports) {
+                preselectionCache.recordReport(report.getDatabaseId(), report.getFetchTime(), report.getRecordTime());
+            }
+        }
 
-            evictCaches();
-        });
+        // split before inserting as new connections get IDs assigned
+        List<RelationalConnection> dirtyConnections = tracker.drain(RelationalConnection.class);
+        List<RelationalConnection> newConnections = filter(dirtyConnections, connection -> connection.getDatabaseId() <= 0);
+        List<RelationalConnection> existingConnections = filter(dirtyConnections, connection -> connection.getDatabaseId() > 0);
+        insertWithAllocatedIds(
+            newConnections,
+            "connections", "connection_id",
+            RelationalConnection::setDatabaseId,
+            RelationalConnection.SQL_INSERT,
+            RelationalConnection::bindInsert //
+        );
+        if (preselectionCache != null) {
+            dirtyConnections.forEach(this::recordConnection);
+        }
+        if (coalesceConnectionUpdates) {
+            addCoalescedLastReportUpdates(filter(existingConnections, RelationalConnection::hasOnlyLastReportChanged));
+            existingConnections = filter(existingConnections, RelationalConnection::isDirty);
+        }
+        forEachWithCaches(existingConnections, RelationalConnection::update);
+
+        forEachWithCaches(tracker.drain(RelationalFacility.class), RelationalFacility::insert);
+
+        // flights need to be inserted before associations can be recorded;
+        // flights remain dirty until all associations have been staged
+        List<RelationalFlight> dirtyFlights = tracker.drain(RelationalFlight.class);
+        List<RelationalFlight> newFlights = filter(dirtyFlights, flight -> flight.getDatabaseId() <= 0);
+        allocateIds(newFlights, "flights", "flight_id", RelationalFlight::setDatabaseId);
+        addBatched(newFlights, RelationalFlight.SQL_INSERT, RelationalFlight::bindInsert, false);
+
+        if (bulkCopyLoader == null) {
+            forEachWithCaches(dirtyFlights, RelationalFlight::insertAssociations);
+        } else {
+            // events are copied after track points
+            forEachWithCaches(dirtyFlights, RelationalFlight::insertConnectionAssociations);
+        }
+
+        List<RelationalFlightPlan> dirtyFlightPlans = tracker.drain(RelationalFlightPlan.class);
+        if (preselectionCache != null) {
+            for (RelationalFlightPlan flightPlan : dirtyFlightPlans) {
+                preselectionCache.recordFlightPlan(
+                    ((RelationalFlight) flightPlan.getFlight()).getDatabaseId(),
+                    flightPlan.getReportFirstSeen().getRecordTime() //
+                );
+            }
+        }
+        forEachWithCaches(dirtyFlightPlans, RelationalFlightPlan::insert);
+
+        if (bulkCopyLoader == null) {
+            addBatched(
+                tracker.drain(RelationalTrackPoint.class),
+                RelationalTrackPoint.SQL_INSERT,
+                RelationalTrackPoint::bindInsert,
+                true //
+            );
+        } else {
+            bulkCopyLoader.copyTrackPoints(caches.getWrites(), tracker.drain(RelationalTrackPoint.class));
+            bulkCopyLoader.copyFlightEvents(caches.getWrites(), dirtyFlights, caches.getFlightEvents());
+        }
+
+        int dirtyAfter = tracker.countDirtyEntities();
+        if (dirtyAfter > 0) {
+            LOGGER.error("{} entities remained dirty after staging ({} reported before), ", dirtyAfter, dirtyBefore);
+            throw new Exception("unexpected number of dirty entities remaining during sync to database");
+        }
+
+        Instant end = Instant.now();
+        LOGGER.debug(
+            "staging {} batched rows took {}ms",
+            caches.getWrites().getNumRows(), Duration.between(start, end).toMillis() //
+        );
+    }
+
+    private void write(Connection db, Caches stagedCaches, Runnable onCommit) {
+        boolean success = false;
+        try {
+            stagedCaches.getWrites().execute();
+
+            LOGGER.debug("committing transactional changes to DB");
+            db.commit();
+            stagedCaches.commit();
+            success = true;
+        } catch (Exception ex) {
+            LOGGER.warn("caught exception while writing to DB, rolling back", ex);
+
+            try {
+                LOGGER.debug("rolling back DB transaction");
+                db.rollback();
+                LOGGER.info("DB transaction successfully rolled back");
+            } catch (SQLException ex2) {
+                LOGGER.warn("DB transaction rollback failed", ex2);
+            }
+        } finally {
+            stagedCaches.evict();
+            pool.release(db);
+
+            if (bulkCopyLoader != null) {
+                CopyStream.trimPool();
+            }
+        }
 
         if (!success) {
             LOGGER.error("Saving entities to database failed; inconsistent state of graph. Exiting...");
             System.exit(1);
         }
+
+        onCommit.run();
+    }
+
+    /**
+     * Blocks until all previously saved entities have been committed to database.
+     * Returns immediately if asynchronous writes are disabled or no writes are
+     * pending.
+     */
+    public void awaitPendingWrites() {
+        if (pendingWrite == null) {
+            return;
+        }
+
+        Instant start = Instant.now();
+        try {
+            pendingWrite.get();
+        } catch (InterruptedException | ExecutionException ex) {
+            throw new RuntimeException("failed to await pending database writes", ex);
+        }
+        pendingWrite = null;
+
+        Instant end = Instant.now();
+        LOGGER.debug("waited {}ms for pending writes", Duration.between(start, end).toMillis());
+    }
+
+    /**
+     * Drops information no longer needed to reload the graph starting at given
+     * time or later from the preselection cache. Should be called when a graph is
+     * retained instead of being reloaded, as the cache otherwise keeps growing
+     * until the next reload.
+     *
+     * @param earliestRecordTimestamp earliest time the graph may be reloaded from
+     */
+    public void prunePreselectionCache(Instant earliestRecordTimestamp) {
+        if (preselectionCache != null) {
+            preselectionCache.prune(earliestRecordTimestamp, FLIGHT_PLAN_RETENTION_TIME);
+        }
+    }
+
+    /**
+     * Reads all enumerations from database and validates them against their Java
+     * enums. Must be called once on startup before any data is loaded or saved.
+     *
+     * @throws IllegalStateException if enumerations cannot be read or do not
+     *         match their Java enums
+     */
+    public void loadEnumerations() {
+        boolean success = withConnection(db -> {
+            flightEvents = new StrictEnumCache<>(
+                db,
+                "SELECT flightevent_id, eventname FROM flightevents",
+                FlightEvent.class,
+                name -> FlightEvent.valueOf(name.toUpperCase()) //
+            );
+        });
+
+        if (!success) {
+            throw new IllegalStateException("failed to load enumerations from database");
+        }
+
+        flightEvents.requireAllEnumsInDatabase();
+    }
+
+    /**
+     * Waits for pending writes to complete and closes all database connections.
+     * The instance cannot be used afterwards.
+     */
+    public void close() {
+        awaitPendingWrites();
+
+        if (writer != null) {
+            writer.shutdown();
+        }
+
+        pool.close();
     }
 
     private void initializeCaches(Connection db) throws SQLException {
@@ -229,7 +673,11 @@ public class Database {
             throw new UnsupportedOperationException("caches must not be reused across transactions");
         }
 
-        caches = new Caches(db);
+        if (flightEvents == null) {
+            throw new IllegalStateException("enumerations have not been loaded");
+        }
+
+        caches = new Caches(db, batchSize, maxPendingRows, maxPendingBytes, fetchNodes, fetchUrls, flightEvents);
     }
 
     private void evictCaches() {
@@ -237,21 +685,169 @@ public class Database {
         caches = null;
     }
 
-    private <T> void forEach(Connection db, Collection<T> elements, ExceptionalBiConsumer<T, Connection> consumer) throws Exception {
+    private <T> void forEachWithCaches(Collection<T> elements, ExceptionalBiConsumer<T, Caches> consumer) throws Exception {
         for (T element : elements) {
-            consumer.accept(element, db);
+            consumer.accept(element, caches);
         }
     }
 
-    private <T> void forEachWithCaches(Connection db, Collection<T> elements, ExceptionalTriConsumer<T, Connection, Caches> consumer) throws Exception {
+    private <T> List<T> filter(Collection<T> elements, Predicate<T> predicate) {
+        return elements.stream()
+            .filter(predicate)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Allocates new IDs for all given elements from the sequence backing the
+     * specified table column. IDs are assigned in ascending order following
+     * iteration order of given elements. This allows multiple entities to be
+     * inserted in a batch instead of requiring one round trip per entity to learn
+     * the ID generated upon insert.
+     *
+     * @param elements elements to allocate IDs for
+     * @param table name of table holding the ID column
+     * @param idColumn name of the serial ID column
+     * @param idSetter assigns an allocated ID to an element
+     * @throws SQLException if allocation fails
+     */
+    private <T> void allocateIds(Collection<T> elements, String table, String idColumn, ObjIntConsumer<T> idSetter) throws SQLException {
+        int count = elements.size();
+        if (count == 0) {
+            return;
+        }
+
+        int[] ids = new int[count];
+        PreparedStatement ps = caches.getStatements().prepare(
+            "SELECT nextval(pg_get_serial_sequence(?, ?)) FROM generate_series(1, ?)" //
+        );
+        ps.setString(1, table);
+        ps.setString(2, idColumn);
+        ps.setInt(3, count);
+
+        try (ResultSet rs = ps.executeQuery()) {
+            int i = 0;
+            while (rs.next()) {
+                if (i >= count) {
+                    throw new RuntimeException("received more IDs than requested for " + table + "." + idColumn);
+                }
+
+                ids[i++] = rs.getInt(1);
+            }
+
+            if (i != count) {
+                throw new RuntimeException(
+                    "requested " + count + " IDs for " + table + "." + idColumn + " but received " + i //
+                );
+            }
+        }
+
+        Arrays.sort(ids);
+
+        int i = 0;
+        for (T element : elements) {
+            idSetter.accept(element, ids[i++]);
+        }
+    }
+
+    /**
+     * Allocates IDs for all given elements (see
+     * {@link #allocateIds(Collection, String, String, ObjIntConsumer)})
+     * and adds inserts to pending writes (see
+     * {@link #addBatched(Collection, String, ExceptionalBiConsumer, boolean)}).
+     * Elements are marked clean after they have been staged.
+     *
+     * @param elements entities to insert
+     * @param table name of table holding the ID column
+     * @param idColumn name of the serial ID column
+     * @param idSetter assigns an allocated ID to an element
+     * @param sql insert statement to prepare
+     * @param binder binds all values of a single element to the statement
+     * @throws Exception if allocation or staging fails
+     */
+    private <T extends DirtyMark> void insertWithAllocatedIds(Collection<T> elements, String table, String idColumn, ObjIntConsumer<T> idSetter, String sql, ExceptionalBiConsumer<T, PreparedStatement> binder) throws Exception {
+        allocateIds(elements, table, idColumn, idSetter);
+        addBatched(elements, sql, binder, true);
+    }
+
+    /**
+     * Adds the given statement for all elements to pending writes. Values are
+     * bound immediately, executions are sent in JDBC batches of configured size.
+     * Each execution is expected to affect exactly one row.
+     *
+     * @param elements entities to execute the statement for
+     * @param sql statement to prepare
+     * @param binder binds all values of a single element to the statement
+     * @param markClean whether elements should be marked clean after they have
+     *        been staged
+     * @throws Exception if staging fails
+     */
+    private <T extends DirtyMark> void addBatched(Collection<T> elements, String sql, ExceptionalBiConsumer<T, PreparedStatement> binder, boolean markClean) throws Exception {
+        PendingWrites writes = caches.getWrites();
         for (T element : elements) {
-            consumer.accept(element, db, caches);
+            writes.addBatch(sql, ExpectedRows.EXACTLY_ONE, ps -> binder.accept(element, ps));
+
+            if (markClean) {
+                element.markClean();
+            }
+        }
+    }
+
+    /**
+     * Adds set-based updates of the last report for all given connections to
+     * pending writes and marks the connections clean. Each statement updates up to
+     * the configured batch size of connections by joining arrays of IDs instead of
+     * sending individual updates, so the same statement is used for any number of
+     * connections.
+     *
+     * @param connections connections whose last report should be updated
+     * @throws Exception if preparing the statement or executing early fails
+     */
+    private void addCoalescedLastReportUpdates(List<RelationalConnection> connections) throws Exception {
+        if (connections.isEmpty()) {
+            return;
+        }
+
+        PendingWrites writes = caches.getWrites();
+        PreparedStatement ps = caches.getStatements().prepare(SQL_COALESCED_LAST_REPORT_UPDATE);
+
+        for (int offset = 0; offset < connections.size(); offset += batchSize) {
+            List<RelationalConnection> slice = connections.subList(
+                offset, Integer.min(offset + batchSize, connections.size()) //
+            );
+
+            // values are copied now as the graph may change before execution
+            Integer[] connectionIds = new Integer[slice.size()];
+            Integer[] lastReportIds = new Integer[slice.size()];
+            int i = 0;
+            for (RelationalConnection connection : slice) {
+                connectionIds[i] = connection.getDatabaseId();
+                lastReportIds[i] = ((RelationalReport) connection.getLastReport()).getDatabaseId();
+                connection.markClean();
+                i++;
+            }
+
+            writes.addAction(db -> {
+                ps.setArray(1, db.createArrayOf("integer", connectionIds));
+                ps.setArray(2, db.createArrayOf("integer", lastReportIds));
+
+                int numUpdated = ps.executeUpdate();
+                if (numUpdated != connectionIds.length) {
+                    throw new RuntimeException(
+                        "coalesced update of " + connectionIds.length + " connections affected " + numUpdated + " rows" //
+                    );
+                }
+            }, slice.size(), 0);
         }
+
+        LOGGER.debug("coalesced last report updates of {} connections", connections.size());
     }
 
     public void loadReportsSinceRecordTime(GraphIndex graphIndex, StatusEntityFactory statusEntityFactory, Instant earliestRecordTimestamp) {
         LOGGER.debug("loading reports starting at record time {} from database", earliestRecordTimestamp);
 
+        awaitPendingWrites();
+
+        Holder<SnapshotReader> openSnapshotReader = new Holder<>();
         boolean success = performTransactional(db -> {
             Instant start = Instant.now();
 
@@ -284,35 +880,55 @@ public class Database {
                 + "    PRIMARY KEY ( flight_id ) "
                 + ") ");
 
-            // select reports to load completely
-            // based on fetch time
-            executeBenchmarked("PRESELECT reports (complete) / fetch time", db, ""
-                + "INSERT INTO _load_reports "
-                + "SELECT report_id, true "
-                + "FROM reports "
-                + "WHERE fetchtime >= ? ",
-                ps -> ps.setTimestamp(1, Timestamp.from(earliestRecordTimestamp)));
-
-            // select connections to load
-            // connections within record time span of selected complete reports
-            executeBenchmarked("PRESELECT connections / complete reports", db, ""
-                + "INSERT INTO _load_connections "
-                + "SELECT c.connection_id "
-                + "FROM connections c "
-                + "LEFT OUTER JOIN reports rf ON c.firstreport_id = rf.report_id "
-                + "LEFT OUTER JOIN reports rl ON c.lastreport_id = rl.report_id "
-                + "WHERE (rf.recordtime, rl.recordtime) OVERLAPS ( "
-                + "   (SELECT MIN(r.recordtime) "
-                + "    FROM _load_reports _lr "
-                + "    LEFT OUTER JOIN reports r ON r.report_id = _lr.report_id "
-                + "    WHERE _lr.complete = true "
-                + "	  ), "
-                + "   (SELECT MAX(r.recordtime) + INTERVAL '1 second' "
-                + "	   FROM _load_reports _lr "
-                + "	   LEFT OUTER JOIN reports r ON r.report_id = _lr.report_id "
-                + "    WHERE _lr.complete = true "
-                + "   ) "
-                + ") ");
+            // rows selected by time ranges can be taken from cache if all
+            // entities since then have been loaded or saved by this instance
+            PreselectionCache.Preselection cachedPreselection = null;
+            if ((preselectionCache != null) && preselectionCache.covers(earliestRecordTimestamp)) {
+                cachedPreselection = preselectionCache.preselect(earliestRecordTimestamp, FLIGHT_PLAN_RETENTION_TIME);
+            }
+
+            if (cachedPreselection != null) {
+                insertPreselectedIds(
+                    "PRESELECT reports (complete) / cached", db,
+                    "INSERT INTO _load_reports SELECT unnest(?), true",
+                    cachedPreselection.completeReportIds //
+                );
+                insertPreselectedIds(
+                    "PRESELECT connections / cached", db,
+                    "INSERT INTO _load_connections SELECT unnest(?)",
+                    cachedPreselection.connectionIds //
+                );
+            } else {
+                // select reports to load completely
+                // based on fetch time
+                executeBenchmarked("PRESELECT reports (complete) / fetch time", db, ""
+                    + "INSERT INTO _load_reports "
+                    + "SELECT report_id, true "
+                    + "FROM reports "
+                    + "WHERE fetchtime >= ? ",
+                    ps -> ps.setTimestamp(1, Timestamp.from(earliestRecordTimestamp)));
+
+                // select connections to load
+                // connections within record time span of selected complete reports
+                executeBenchmarked("PRESELECT connections / complete reports", db, ""
+                    + "INSERT INTO _load_connections "
+                    + "SELECT c.connection_id "
+                    + "FROM connections c "
+                    + "LEFT OUTER JOIN reports rf ON c.firstreport_id = rf.report_id "
+                    + "LEFT OUTER JOIN reports rl ON c.lastreport_id = rl.report_id "
+                    + "WHERE (rf.recordtime, rl.recordtime) OVERLAPS ( "
+                    + "   (SELECT MIN(r.recordtime) "
+                    + "    FROM _load_reports _lr "
+                    + "    LEFT OUTER JOIN reports r ON r.report_id = _lr.report_id "
+                    + "    WHERE _lr.complete = true "
+                    + "	  ), "
+                    + "   (SELECT MAX(r.recordtime) + INTERVAL '1 second' "
+                    + "	   FROM _load_reports _lr "
+                    + "	   LEFT OUTER JOIN reports r ON r.report_id = _lr.report_id "
+                    + "    WHERE _lr.complete = true "
+                    + "   ) "
+                    + ") ");
+            }
 
             // select flights to load
             // referenced by one or more connections
@@ -322,32 +938,40 @@ public class Database {
                 + "FROM connections_flights cf "
                 + "WHERE cf.connection_id IN (SELECT connection_id FROM _load_connections) ");
 
-            // select flights to load
-            // referenced by flight plans
-            // with maximum theoretical (not actual) retention time
-            // within timespan of reports preselected for complete import
-            executeBenchmarked(
-                "PRESELECT flights / flight plans / complete reports within maximum retention time "
-                    + FLIGHT_PLAN_RETENTION_TIME,
-                db, ""
-                    + "INSERT INTO _load_flights "
-                    + "SELECT DISTINCT flight_id "
-                    + "FROM flightplans fp "
-                    + "LEFT OUTER JOIN reports rfs ON rfs.report_id = fp.firstseen_report_id "
-                    + "WHERE (rfs.recordtime, rfs.recordtime + ?) OVERLAPS ( "
-                    + "   (SELECT MIN(r.recordtime) "
-                    + "    FROM _load_reports _lr "
-                    + "    LEFT OUTER JOIN reports r ON r.report_id = _lr.report_id "
-                    + "    WHERE _lr.complete = true "
-                    + "   ), "
-                    + "   (SELECT MAX(r.recordtime) + INTERVAL '1 second' "
-                    + "    FROM _load_reports _lr "
-                    + "    LEFT OUTER JOIN reports r ON r.report_id = _lr.report_id "
-                    + "    WHERE _lr.complete = true "
-                    + "   ) "
-                    + ") "
-                    + "ON CONFLICT DO NOTHING ",
-                ps -> ps.setObject(1, toPostgresInterval(FLIGHT_PLAN_RETENTION_TIME)));
+            if (cachedPreselection != null) {
+                insertPreselectedIds(
+                    "PRESELECT flights / cached", db,
+                    "INSERT INTO _load_flights SELECT unnest(?) ON CONFLICT DO NOTHING",
+                    cachedPreselection.flightIds //
+                );
+            } else {
+                // select flights to load
+                // referenced by flight plans
+                // with maximum theoretical (not actual) retention time
+                // within timespan of reports preselected for complete import
+                executeBenchmarked(
+                    "PRESELECT flights / flight plans / complete reports within maximum retention time "
+                        + FLIGHT_PLAN_RETENTION_TIME,
+                    db, ""
+                        + "INSERT INTO _load_flights "
+                        + "SELECT DISTINCT flight_id "
+                        + "FROM flightplans fp "
+                        + "LEFT OUTER JOIN reports rfs ON rfs.report_id = fp.firstseen_report_id "
+                        + "WHERE (rfs.recordtime, rfs.recordtime + ?) OVERLAPS ( "
+                        + "   (SELECT MIN(r.recordtime) "
+                        + "    FROM _load_reports _lr "
+                        + "    LEFT OUTER JOIN reports r ON r.report_id = _lr.report_id "
+                        + "    WHERE _lr.complete = true "
+                        + "   ), "
+                        + "   (SELECT MAX(r.recordtime) + INTERVAL '1 second' "
+                        + "    FROM _load_reports _lr "
+                        + "    LEFT OUTER JOIN reports r ON r.report_id = _lr.report_id "
+                        + "    WHERE _lr.complete = true "
+                        + "   ) "
+                        + ") "
+                        + "ON CONFLICT DO NOTHING ",
+                    ps -> ps.setObject(1, toPostgresInterval(FLIGHT_PLAN_RETENTION_TIME)));
+            }
 
             // select additional connections to load
             // referenced by selected flights
@@ -400,6 +1024,54 @@ public class Database {
 
             Instant endPreselect = Instant.now();
 
+            // result sets only depending on preselection may be read concurrently
+            // on further connections sharing the snapshot of this transaction;
+            // temporary tables are not visible to other sessions, so IDs are
+            // passed along instead
+            SnapshotReader snapshotReader = null;
+            Integer[] preselectedConnectionIds = null;
+            Integer[] preselectedFlightIds = null;
+            if (parallelLoadConnections > 1) {
+                snapshotReader = new SnapshotReader(pool, db, parallelLoadConnections, fetchSize);
+                openSnapshotReader.value = snapshotReader;
+                preselectedConnectionIds = queryIds(db, "SELECT connection_id FROM _load_connections");
+                preselectedFlightIds = queryIds(db, "SELECT flight_id FROM _load_flights");
+            }
+
+            // track points are by far the largest result set and always
+            // streamed from a cursor on the loading connection instead of
+            // being buffered by concurrent reads;
+            // geocoords is a geography column while ST_X/ST_Y/ST_Z are only
+            // defined for geometry, so it needs to be cast explicitly
+            PreselectedResultSet trackPointsResultSet = preselected(
+                db, null,
+                "SELECT tp.flight_id, tp.report_id, ST_X(geocoords::geometry) longitude, ST_Y(geocoords::geometry) latitude, ST_Z(geocoords::geometry) altitude, heading, groundspeed, transpondercode, qnhcinhg, flightevent_id "
+                    + "FROM trackpoints tp "
+                    + "LEFT OUTER JOIN trackpoints_flightevents tpfe ON tpfe.flight_id = tp.flight_id AND tpfe.report_id = tp.report_id ",
+                "tp.flight_id", "SELECT flight_id FROM _load_flights", preselectedFlightIds //
+            );
+            PreselectedResultSet flightPlansResultSet = preselected(
+                db, snapshotReader,
+                "SELECT flight_id, revision, firstseen_report_id, flightplantype, route, altitudefeet, minutesenroute, minutesfuel, departureairport, destinationairport, alternateairport, aircrafttype, departuretimeplanned "
+                    + "FROM flightplans fp ",
+                "flight_id", "SELECT flight_id FROM _load_flights", preselectedFlightIds //
+            );
+            PreselectedResultSet facilitiesResultSet = preselected(
+                db, snapshotReader,
+                "SELECT connection_id, name FROM facilities ",
+                "connection_id", "SELECT connection_id FROM _load_connections", preselectedConnectionIds //
+            );
+            PreselectedResultSet flightsResultSet = preselected(
+                db, snapshotReader,
+                "SELECT f.flight_id, vatsimid, callsign FROM flights f ",
+                "f.flight_id", "SELECT flight_id FROM _load_flights", preselectedFlightIds //
+            );
+            PreselectedResultSet connectionsFlightsResultSet = preselected(
+                db, snapshotReader,
+                "SELECT flight_id, connection_id FROM connections_flights cf ",
+                "flight_id", "SELECT flight_id FROM _load_flights", preselectedFlightIds //
+            );
+
             // read all preselected reports
             Map<Integer, RelationalReport> reportsById = new HashMap<>();
             query(db, ""
@@ -433,6 +1105,11 @@ public class Database {
                     LOGGER.debug("read {} reports from database", reportsById.size());
                 });
 
+            // reports sorted by record time allow registration of entities for a
+            // period of time to be narrowed down by binary search
+            List<RelationalReport> reportsByRecordTime = new ArrayList<>(reportsById.values());
+            reportsByRecordTime.sort(Comparator.comparing(RelationalReport::getRecordTime));
+
             // read all preselected connections
             Map<Integer, Member> membersByVatsimId = new HashMap<>();
             Map<Integer, RelationalConnection> connectionsById = new HashMap<>();
@@ -487,10 +1164,7 @@ public class Database {
                 });
 
             // read all facilities of preselected connections
-            query(db, ""
-                + "SELECT connection_id, name "
-                + "FROM facilities "
-                + "WHERE connection_id IN (SELECT connection_id FROM _load_connections) ",
+            facilitiesResultSet.consume(
                 rs -> {
                     int importedFacilities = 0;
                     while (rs.next()) {
@@ -536,11 +1210,10 @@ public class Database {
                         // reports
                         Instant firstRecordTime = connection.getFirstReport().getRecordTime();
                         Instant lastRecordTime = connection.getLastReport().getRecordTime();
-                        reportsById
-                            .values()
-                            .stream()
-                            .filter(report -> isBetween(report.getRecordTime(), firstRecordTime, lastRecordTime))
-                            .forEach(report -> report.addFacility(facility));
+                        forEachReportBetween(
+                            reportsByRecordTime, firstRecordTime, lastRecordTime,
+                            report -> report.addFacility(facility) //
+                        );
                     }
 
                     LOGGER.debug("read {} facilities from database", importedFacilities);
@@ -548,10 +1221,7 @@ public class Database {
 
             // read all preselected flights
             Map<Integer, RelationalFlight> flightsById = new HashMap<>();
-            query(db, ""
-                + "SELECT f.flight_id, vatsimid, callsign "
-                + "FROM _load_flights _lf "
-                + "LEFT OUTER JOIN flights f ON f.flight_id = _lf.flight_id ",
+            flightsResultSet.consume(
                 rs -> {
                     while (rs.next()) {
                         int flightId = rs.getInt("flight_id");
@@ -580,10 +1250,7 @@ public class Database {
                 });
 
             // associate all preselected flights with connections
-            query(db, ""
-                + "SELECT flight_id, connection_id "
-                + "FROM connections_flights cf "
-                + "WHERE flight_id IN (SELECT flight_id FROM _load_flights) ",
+            connectionsFlightsResultSet.consume(
                 rs -> {
                     int numAssociations = 0;
                     while (rs.next()) {
@@ -617,10 +1284,7 @@ public class Database {
                 });
 
             // read all flight plans of preselected flights
-            query(db, ""
-                + "SELECT flight_id, revision, firstseen_report_id, flightplantype, route, altitudefeet, minutesenroute, minutesfuel, departureairport, destinationairport, alternateairport, aircrafttype, departuretimeplanned "
-                + "FROM flightplans fp "
-                + "WHERE flight_id IN (SELECT flight_id FROM _load_flights)",
+            flightPlansResultSet.consume(
                 rs -> {
                     int numFlightPlans = 0;
                     while (rs.next()) {
@@ -665,11 +1329,7 @@ public class Database {
                 });
 
             // read all track points of preselected flights
-            query(db, ""
-                + "SELECT tp.flight_id, tp.report_id, ST_AsText(geocoords) geocoords, heading, groundspeed, transpondercode, qnhcinhg, flightevent_id "
-                + "FROM trackpoints tp "
-                + "LEFT OUTER JOIN trackpoints_flightevents tpfe ON tpfe.flight_id = tp.flight_id AND tpfe.report_id = tp.report_id "
-                + "WHERE tp.flight_id IN (SELECT flight_id FROM _load_flights) ",
+            trackPointsResultSet.consume(
                 rs -> {
                     int numTrackPoints = 0;
                     int numMarkedEvents = 0;
@@ -691,7 +1351,7 @@ public class Database {
                         RelationalTrackPoint trackPoint = (RelationalTrackPoint) statusEntityFactory
                             .createTrackPoint(report);
                         trackPoint.setFlight(flight);
-                        trackPoint.setGeoCoordinates(convertPostGisToGeoCoordinates(rs.getString("geocoords")));
+                        trackPoint.setGeoCoordinates(readGeoCoordinates(rs));
                         trackPoint.setGroundSpeed(negativeIfNull(rs, "groundspeed"));
                         trackPoint.setHeading(negativeIfNull(rs, "heading"));
                         trackPoint.setQnh(nullableBarometricPressureFromCentiInchesOfMercury(rs, "qnhcinhg"));
@@ -732,11 +1392,10 @@ public class Database {
                     .getConnections()) {
                     Instant firstRecordTime = connection.getFirstReport().getRecordTime();
                     Instant lastRecordTime = connection.getLastReport().getRecordTime();
-                    reportsById
-                        .values()
-                        .stream()
-                        .filter(report -> isBetween(report.getRecordTime(), firstRecordTime, lastRecordTime))
-                        .forEach(report -> report.addFlight(flight));
+                    forEachReportBetween(
+                        reportsByRecordTime, firstRecordTime, lastRecordTime,
+                        report -> report.addFlight(flight) //
+                    );
                 }
             }
             Instant endFlightConnectionRegistration = Instant.now();
@@ -814,15 +1473,10 @@ public class Database {
                     lastConnectionRecordTime,
                     lastFlightPlanRevisionRecordTimeBeforeConnected.plus(FLIGHT_PLAN_RETENTION_TIME));
 
-                reportsById
-                    .values()
-                    .stream()
-                    .filter(
-                        report -> isBetween(
-                            report.getRecordTime(),
-                            firstFlightPlanRevisionRecordTime,
-                            latestAssumedRetentionTime))
-                    .forEach(report -> report.addFlight(flight));
+                forEachReportBetween(
+                    reportsByRecordTime, firstFlightPlanRevisionRecordTime, latestAssumedRetentionTime,
+                    report -> report.addFlight(flight) //
+                );
 
                 numFlightsRegisteredByFlightPlan++;
             }
@@ -844,6 +1498,13 @@ public class Database {
             membersByVatsimId.values().forEach(graphIndex::add);
             reportsById.values().forEach(graphIndex::add);
 
+            if (preselectionCache != null) {
+                if (cachedPreselection == null) {
+                    preselectionCache.reset(earliestRecordTimestamp);
+                }
+                recordLoadedEntities(reportsById.values(), connectionsById.values(), flightsById.values());
+            }
+
             Instant end = Instant.now();
             LOGGER.info(
                 "Loading complete after {}ms (preselect {}ms, fetch {}ms)",
@@ -851,16 +1512,61 @@ public class Database {
                 Duration.between(start, endPreselect).toMillis(),
                 Duration.between(endPreselect, end).toMillis() //
             );
-
-            evictCaches();
         });
 
+        // reader threads must stop borrowing connections also if loading failed
+        if (openSnapshotReader.value != null) {
+            openSnapshotReader.value.close();
+        }
+
         if (!success) {
             LOGGER.error("Failed to load reports from database, giving up...");
             System.exit(1);
         }
     }
 
+    /**
+     * Calls the given consumer for all reports recorded between start and end
+     * (inclusive), in order of record time. The first report is located by binary
+     * search, so only reports within the given period are visited.
+     *
+     * @param reportsByRecordTime reports sorted by record time
+     * @param start earliest record time (inclusive)
+     * @param end latest record time (inclusive)
+     * @param consumer called for each matching report
+     * @throws IllegalArgumentException if start or end is null or end is before
+     *         start
+     */
+    private void forEachReportBetween(List<RelationalReport> reportsByRecordTime, Instant start, Instant end, Consumer<RelationalReport> consumer) {
+        if ((start == null) || (end == null)) {
+            throw new IllegalArgumentException("start and end must not be null");
+        }
+
+        if (end.isBefore(start)) {
+            throw new IllegalArgumentException("end must be after start");
+        }
+
+        int low = 0;
+        int high = reportsByRecordTime.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (reportsByRecordTime.get(middle).getRecordTime().isBefore(start)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        for (int i = low; i < reportsByRecordTime.size(); i++) {
+            RelationalReport report = reportsByRecordTime.get(i);
+            if (report.getRecordTime().isAfter(end)) {
+                break;
+            }
+
+            consumer.accept(report);
+        }
+    }
+
     private <T> Optional<T> getFirst(SortedSet<T> set) {
         if (set.isEmpty()) {
             return Optional.empty();
@@ -877,24 +1583,57 @@ public class Database {
         return Optional.of(set.last());
     }
 
-    private GeoCoordinates convertPostGisToGeoCoordinates(String s) {
+    /**
+     * Converts the WKT representation of a 3-dimensional point as returned by
+     * PostGIS <code>ST_AsText</code> to {@link GeoCoordinates}.
+     *
+     * @param s WKT representation of a point, e.g. <code>POINT Z (lon lat alt)</code>
+     * @return coordinates of given point
+     * @throws IllegalArgumentException if input is not a supported WKT point
+     */
+    public static GeoCoordinates convertPostGisToGeoCoordinates(String s) {
         Matcher matcher = PATTERN_POSTGIS_POINTZ.matcher(s);
         if (!matcher.matches()) {
             throw new IllegalArgumentException("Unsupported input format: \"" + s + "\"");
         }
 
-        double latitude = Double.parseDouble(matcher.group(PATTERN_POSTGIS_POINTZ_LATITUDE));
-        double longitude = Double.parseDouble(matcher.group(PATTERN_POSTGIS_POINTZ_LONGITUDE));
-        double altitude = Double.parseDouble(matcher.group(PATTERN_POSTGIS_POINTZ_Z));
+        return convertPostGisToGeoCoordinates(
+            Double.parseDouble(matcher.group(PATTERN_POSTGIS_POINTZ_LONGITUDE)),
+            Double.parseDouble(matcher.group(PATTERN_POSTGIS_POINTZ_LATITUDE)),
+            Double.parseDouble(matcher.group(PATTERN_POSTGIS_POINTZ_Z)) //
+        );
+    }
 
+    /**
+     * Converts the ordinates of a 3-dimensional point as returned by PostGIS
+     * <code>ST_X</code>, <code>ST_Y</code> and <code>ST_Z</code> (on geography
+     * cast to geometry) to {@link GeoCoordinates}.
+     *
+     * @param x longitude
+     * @param y latitude
+     * @param z altitude
+     * @return coordinates of given point
+     */
+    public static GeoCoordinates convertPostGisToGeoCoordinates(double x, double y, double z) {
         return new GeoCoordinates(
-            latitude,
-            longitude,
-            (int) Math.round(altitude),
+            y,
+            x,
+            (int) Math.round(z),
             RelationalTrackPoint.POSTGIS_IS_ALTITUDE_UNIT_FEET //
         );
     }
 
+    private GeoCoordinates readGeoCoordinates(ResultSet rs) throws SQLException {
+        double longitude = rs.getDouble("longitude");
+        double latitude = rs.getDouble("latitude");
+        double altitude = rs.getDouble("altitude");
+        if (rs.wasNull()) {
+            throw new IllegalArgumentException("track point is missing coordinates");
+        }
+
+        return convertPostGisToGeoCoordinates(longitude, latitude, altitude);
+    }
+
     private void execute(Connection db, String sql) throws SQLException {
         try (Statement stmt = db.createStatement()) {
             stmt.execute(sql);
@@ -966,13 +1705,17 @@ public class Database {
     }
 
     private BarometricPressure nullableBarometricPressureFromCentiInchesOfMercury(ResultSet rs, String fieldName) throws SQLException {
-        BarometricPressure value = BarometricPressure.fromInchesOfMercury((double) rs.getInt(fieldName) / 100.0);
+        int centiInchesOfMercury = rs.getInt(fieldName);
 
         if (rs.wasNull()) {
             return null;
         }
 
-        return value;
+        // only few distinct values are stored, so track points share instances
+        return sharedQnhByCentiInchesOfMercury.computeIfAbsent(
+            centiInchesOfMercury,
+            x -> BarometricPressure.fromInchesOfMercury((double) x / 100.0) //
+        );
     }
 
     private FlightEvent nullableFlightEvent(ResultSet rs, String fieldName) throws SQLException {
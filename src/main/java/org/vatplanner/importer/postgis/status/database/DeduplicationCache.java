@@ -1,76 +1,210 @@
 package org.vatplanner.importer.postgis.status.database;
 
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Maps deduplicated values to the IDs of their rows for the whole lifetime of
+ * the application. All rows are preloaded when the cache is used for the first
+ * time, so lookups only need to query the database for values which have not
+ * been seen yet. Such values should be resolved in bulk by
+ * {@link #resolve(Collection)} before looking up individual IDs: missing rows
+ * are inserted by a single <code>INSERT ... ON CONFLICT DO NOTHING</code> and
+ * rows inserted concurrently by others are selected by a single query.
+ *
+ * <p>
+ * The cache is bound to a single transaction at a time by
+ * {@link #begin(PreparedStatementCache)}. Values inserted during that
+ * transaction are only kept if the transaction is confirmed by
+ * {@link #commit()} before {@link #end()} is called; otherwise they are
+ * invalidated as their rows have been rolled back.
+ * </p>
+ *
+ * <p>
+ * Instances are not thread-safe; transactions may be handled by different
+ * threads only if they are strictly ordered.
+ * </p>
+ */
 public class DeduplicationCache {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DeduplicationCache.class);
 
     private final Map<String, Integer> cache = new HashMap<>();
-    private final Connection db;
+    private final List<String> uncommittedInserts = new ArrayList<>();
+    private final String sqlPreload;
     private final String sqlSelect;
     private final String sqlInsert;
+    private final String arrayType;
+
+    private PreparedStatementCache statements;
+    private boolean isPreloaded = false;
+
+    /**
+     * Creates a new cache for the given table. The value column must be subject
+     * to a unique constraint.
+     *
+     * @param table name of table holding deduplicated values
+     * @param idColumn name of the serial ID column
+     * @param valueColumn name of the column holding values
+     * @param arrayType SQL type to pass arrays of values as
+     */
+    public DeduplicationCache(String table, String idColumn, String valueColumn, String arrayType) {
+        this.arrayType = arrayType;
+
+        sqlPreload = "SELECT " + idColumn + ", \"" + valueColumn + "\" FROM " + table;
+        sqlSelect = sqlPreload + " WHERE \"" + valueColumn + "\" = ANY(?)";
+        sqlInsert = "INSERT INTO " + table + " (\"" + valueColumn + "\") SELECT unnest(?) ON CONFLICT DO NOTHING RETURNING " + idColumn + ", \"" + valueColumn + "\"";
+    }
+
+    /**
+     * Binds the cache to a transaction. All rows are preloaded on first call.
+     *
+     * @param statements statements of the transaction
+     * @throws SQLException if preloading fails
+     */
+    public void begin(PreparedStatementCache statements) throws SQLException {
+        if (this.statements != null) {
+            throw new IllegalStateException("cache is still bound to another transaction");
+        }
 
-    public DeduplicationCache(Connection db, String sqlSelect, String sqlInsert) {
-        this.db = db;
-        this.sqlSelect = sqlSelect;
-        this.sqlInsert = sqlInsert;
+        this.statements = statements;
+
+        if (!isPreloaded) {
+            preload();
+        }
     }
 
-    public int getId(String original) throws SQLException {
-        // TODO: replace by DB function
+    private void preload() throws SQLException {
+        try (ResultSet rs = statements.prepare(sqlPreload).executeQuery()) {
+            while (rs.next()) {
+                cache.put(rs.getString(2), rs.getInt(1));
+            }
+        }
 
-        if (original == null) {
-            LOGGER.trace("DEDUPLICATION NULL, no lookup");
-            return 0;
+        isPreloaded = true;
+
+        LOGGER.debug("preloaded {} values: {}", cache.size(), sqlPreload);
+    }
+
+    /**
+     * Confirms all values inserted since the transaction began.
+     */
+    public void commit() {
+        uncommittedInserts.clear();
+    }
+
+    /**
+     * Unbinds the cache from the current transaction. Values inserted but not
+     * committed are invalidated.
+     */
+    public void end() {
+        if (!uncommittedInserts.isEmpty()) {
+            LOGGER.debug("invalidating {} uncommitted values: {}", uncommittedInserts.size(), sqlInsert);
+            for (String original : uncommittedInserts) {
+                cache.remove(original);
+            }
+            uncommittedInserts.clear();
         }
 
-        int id = cache.getOrDefault(original, -1);
+        statements = null;
+    }
 
-        if (id > 0) {
-            LOGGER.trace("DEDUPLICATION CACHED: {} => {}", original, id);
-            return id;
+    /**
+     * Makes sure all given values are held by the cache, inserting rows as
+     * needed. Values already held by the cache are not queried again.
+     *
+     * @param originals values to resolve; may contain null and duplicates
+     * @throws SQLException if querying or inserting fails
+     */
+    public void resolve(Collection<String> originals) throws SQLException {
+        Set<String> missing = new LinkedHashSet<>();
+        for (String original : originals) {
+            if ((original != null) && !cache.containsKey(original)) {
+                missing.add(original);
+            }
         }
 
-        LOGGER.trace("DEDUPLICATION SELECT for {}: ", original, sqlSelect);
+        if (missing.isEmpty()) {
+            return;
+        }
 
-        PreparedStatement ps = db.prepareStatement(sqlSelect);
-        ps.setString(1, original);
+        if (statements == null) {
+            throw new IllegalStateException("cache is not bound to a transaction");
+        }
 
-        ResultSet rs = ps.executeQuery();
-        boolean hasId = rs.next();
-        if (hasId) {
-            id = rs.getInt(1);
-        } else {
-            rs.close();
-            ps.close();
+        LOGGER.trace("DEDUPLICATION INSERT for {}: {}", missing, sqlInsert);
+        int numInserted = queryIds(sqlInsert, missing, original -> {
+            uncommittedInserts.add(original);
+            missing.remove(original);
+        });
+
+        // remaining values already existed but were not known yet
+        int numSelected = 0;
+        if (!missing.isEmpty()) {
+            LOGGER.trace("DEDUPLICATION SELECT for {}: {}", missing, sqlSelect);
+            numSelected = queryIds(sqlSelect, missing, missing::remove);
+        }
 
-            LOGGER.trace("DEDUPLICATION INSERT for {}: ", original, sqlSelect);
+        if (!missing.isEmpty()) {
+            throw new SQLException("failed to resolve " + missing.size() + " values: " + missing);
+        }
 
-            ps = db.prepareStatement(sqlInsert);
-            ps.setString(1, original);
-            rs = ps.executeQuery();
+        LOGGER.debug("resolved {} inserted, {} selected values: {}", numInserted, numSelected, sqlPreload);
+    }
 
-            rs.next();
-            id = rs.getInt(1);
+    private int queryIds(String sql, Collection<String> originals, Consumer<String> onFound) throws SQLException {
+        PreparedStatement ps = statements.prepare(sql);
+        ps.setArray(1, ps.getConnection().createArrayOf(arrayType, originals.toArray()));
+
+        List<String> found = new ArrayList<>();
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                String original = rs.getString(2);
+                cache.put(original, rs.getInt(1));
+                found.add(original);
+            }
         }
 
-        rs.close();
-        ps.close();
+        found.forEach(onFound);
 
-        LOGGER.trace("DEDUPLICATION FOUND: {} => {}", original, id);
+        return found.size();
+    }
+
+    /**
+     * Returns the ID of given value. Values not held by the cache are resolved
+     * individually (see {@link #resolve(Collection)}).
+     *
+     * @param original value to look up
+     * @return ID of given value; 0 for null
+     * @throws SQLException if resolving the value fails
+     */
+    public int getId(String original) throws SQLException {
+        if (original == null) {
+            LOGGER.trace("DEDUPLICATION NULL, no lookup");
+            return 0;
+        }
 
-        cache.put(original, id);
+        Integer id = cache.get(original);
+        if (id == null) {
+            resolve(Collections.singleton(original));
+            id = cache.get(original);
+        }
+
+        LOGGER.trace("DEDUPLICATION FOUND: {} => {}", original, id);
 
         return id;
     }
-
 }
@@ -0,0 +1,363 @@
+package org.vatplanner.importer.postgis.status.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.vatplanner.importer.postgis.status.utils.ExceptionalConsumer;
+
+/**
+ * Collects write operations of a transaction so they can be executed at a later
+ * time, possibly on another thread.
+ *
+ * <p>
+ * Values are bound to JDBC batches immediately when a write is added, so
+ * entities are free to be modified again as soon as they have been staged.
+ * Statements are taken from the {@link PreparedStatementCache} of the
+ * transaction while staging, so they are reused whenever writes have been
+ * executed; only batches of the same statement pending at the same time need
+ * separate instances.
+ * </p>
+ *
+ * <p>
+ * Batches and actions are executed in the order they have been started. Rows of
+ * the same statement are sent in batches of the configured size, so a row added
+ * to a batch which is still open is executed together with that batch, ahead
+ * of other statements and actions added between the start of the batch and the
+ * row. Order is therefore only guaranteed between rows of the same statement;
+ * writes depending on each other (such as rows referencing previously inserted
+ * rows) must be staged grouped by statement in order of their dependencies.
+ * Adding an action closes all open batches.
+ * </p>
+ *
+ * <p>
+ * To bound the memory held by bound values, all writes staged so far are
+ * executed immediately on the staging thread as soon as the configured number
+ * of rows or bytes (held by actions outside the heap, such as
+ * {@link CopyStream}s) is pending. Staging is blocked until they have been
+ * executed, even if {@link #execute()} is later called on another thread, so
+ * such early executions are logged. Only the remaining writes are left to
+ * {@link #execute()}.
+ * </p>
+ *
+ * <p>
+ * The connection used to prepare statements must not be used by any other
+ * thread while writes are being staged or executed.
+ * </p>
+ */
+public class PendingWrites {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PendingWrites.class);
+
+    private final Connection db;
+    private final PreparedStatementCache statements;
+    private final int batchSize;
+    private final int maxPendingRows;
+    private final long maxPendingBytes;
+
+    private final List<DatabaseAction> actions = new ArrayList<>();
+    private final List<Runnable> discardHandlers = new ArrayList<>();
+    private final Map<String, Batch> openBatches = new HashMap<>();
+    private final Map<String, Integer> numPendingInstances = new HashMap<>();
+
+    private int numRows = 0;
+    private int numPendingRows = 0;
+    private long numPendingBytes = 0;
+    private int numBatches = 0;
+    private int numEarlyExecutions = 0;
+    private boolean isExecuted = false;
+
+    /**
+     * Number of rows expected to be affected by each execution of a batched
+     * statement.
+     */
+    public enum ExpectedRows {
+        /**
+         * Each execution must affect exactly one row.
+         */
+        EXACTLY_ONE,
+
+        /**
+         * Executions may affect no row, for example when conflicts are ignored.
+         */
+        AT_MOST_ONE;
+    }
+
+    private static class Batch {
+        private final String sql;
+        private final PreparedStatement ps;
+        private final ExpectedRows expectedRows;
+        private int size = 0;
+
+        private Batch(String sql, PreparedStatement ps, ExpectedRows expectedRows) {
+            this.sql = sql;
+            this.ps = ps;
+            this.expectedRows = expectedRows;
+        }
+    }
+
+    /**
+     * Creates a new collection of pending writes.
+     *
+     * @param db connection to execute all writes on
+     * @param statements cache to take statements from; must be bound to the same
+     *        connection
+     * @param batchSize maximum number of rows sent per JDBC batch
+     * @param maxPendingRows number of rows after which all writes staged so far
+     *        are executed immediately
+     * @param maxPendingBytes number of bytes held by actions after which all
+     *        writes staged so far are executed immediately
+     */
+    public PendingWrites(Connection db, PreparedStatementCache statements, int batchSize, int maxPendingRows, long maxPendingBytes) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batch size must be at least 1, got " + batchSize);
+        }
+
+        if (maxPendingRows < batchSize) {
+            throw new IllegalArgumentException(
+                "maximum pending rows must be at least batch size (" + batchSize + "), got " + maxPendingRows //
+            );
+        }
+
+        if (maxPendingBytes < 1) {
+            throw new IllegalArgumentException("maximum pending bytes must be at least 1, got " + maxPendingBytes);
+        }
+
+        this.db = db;
+        this.statements = statements;
+        this.batchSize = batchSize;
+        this.maxPendingRows = maxPendingRows;
+        this.maxPendingBytes = maxPendingBytes;
+    }
+
+    /**
+     * Binds a single row to a batch of the given statement. The binder is invoked
+     * immediately. All writes staged so far are executed if the maximum number of
+     * pending rows is reached.
+     *
+     * @param sql statement to execute
+     * @param expectedRows number of rows the statement is expected to affect
+     * @param binder binds all values to the statement
+     * @throws Exception if preparing, binding or executing early fails
+     */
+    public void addBatch(String sql, ExpectedRows expectedRows, ExceptionalConsumer<PreparedStatement, Exception> binder) throws Exception {
+        checkNotExecuted();
+
+        Batch batch = openBatches.get(sql);
+        if (batch == null) {
+            // batches still pending for the same SQL need their own statement instance
+            int instance = numPendingInstances.getOrDefault(sql, 0);
+            numPendingInstances.put(sql, instance + 1);
+
+            batch = new Batch(sql, statements.prepare(sql, instance), expectedRows);
+            openBatches.put(sql, batch);
+            numBatches++;
+
+            Batch newBatch = batch;
+            actions.add(db -> executeBatch(newBatch));
+        }
+
+        binder.accept(batch.ps);
+        batch.ps.addBatch();
+        batch.size++;
+        numRows++;
+        numPendingRows++;
+
+        if (batch.size >= batchSize) {
+            // following rows are added to a new batch
+            openBatches.remove(sql);
+        }
+
+        executeIfLimitReached();
+    }
+
+    /**
+     * Adds an arbitrary action to be run when writes are executed.
+     *
+     * @param action action to run
+     */
+    public void addAction(DatabaseAction action) {
+        checkNotExecuted();
+
+        openBatches.clear();
+        actions.add(action);
+    }
+
+    /**
+     * Adds an action writing the given number of rows which are held in memory
+     * until the action is run. All writes staged so far are executed if the
+     * maximum number of pending rows or bytes is reached.
+     *
+     * @param action action to run
+     * @param numActionRows number of rows written by the action
+     * @param numActionBytes number of bytes held by the action until it is run
+     * @throws Exception if executing early fails
+     */
+    public void addAction(DatabaseAction action, long numActionRows, long numActionBytes) throws Exception {
+        addAction(action, numActionRows, numActionBytes, null);
+    }
+
+    /**
+     * Adds an action writing the given number of rows which are held in memory
+     * until the action is run. If writes are closed before the action has been
+     * run successfully, the given handler is called to release the memory. All
+     * writes staged so far are executed if the maximum number of pending rows or
+     * bytes is reached.
+     *
+     * @param action action to run
+     * @param numActionRows number of rows written by the action
+     * @param numActionBytes number of bytes held by the action until it is run
+     * @param onDiscard releases memory held by the action; must have no effect if
+     *        memory has already been released by running the action; null if not
+     *        needed
+     * @throws Exception if executing early fails
+     */
+    public void addAction(DatabaseAction action, long numActionRows, long numActionBytes, Runnable onDiscard) throws Exception {
+        addAction(action);
+
+        if (onDiscard != null) {
+            discardHandlers.add(onDiscard);
+        }
+
+        numRows += numActionRows;
+        numPendingRows += numActionRows;
+        numPendingBytes += numActionBytes;
+
+        executeIfLimitReached();
+    }
+
+    /**
+     * Returns the number of rows which can still be staged before all pending
+     * writes are executed.
+     *
+     * @return number of rows until pending writes are executed, at least 1
+     */
+    public int getRemainingRows() {
+        return Integer.max(1, maxPendingRows - numPendingRows);
+    }
+
+    /**
+     * Returns the number of bytes which can still be held by actions before all
+     * pending writes are executed.
+     *
+     * @return number of bytes until pending writes are executed, at least 1
+     */
+    public long getRemainingBytes() {
+        return Long.max(1, maxPendingBytes - numPendingBytes);
+    }
+
+    private void executeIfLimitReached() throws Exception {
+        if ((numPendingRows < maxPendingRows) && (numPendingBytes < maxPendingBytes)) {
+            return;
+        }
+
+        int rows = numPendingRows;
+        long bytes = numPendingBytes;
+
+        Instant start = Instant.now();
+        numEarlyExecutions++;
+        executePending();
+        Instant end = Instant.now();
+
+        LOGGER.info(
+            "executed staged writes early on staging thread in {}ms, limit reached with {} rows and {} bytes pending",
+            Duration.between(start, end).toMillis(), rows, bytes //
+        );
+    }
+
+    private void executePending() throws Exception {
+        // open batches are executed now, so they must not receive further rows
+        openBatches.clear();
+
+        for (DatabaseAction action : actions) {
+            action.run(db);
+        }
+        actions.clear();
+        discardHandlers.clear();
+
+        // executed batches have been cleared, so all statement instances can be reused
+        numPendingInstances.clear();
+        numPendingRows = 0;
+        numPendingBytes = 0;
+    }
+
+    private void checkNotExecuted() {
+        if (isExecuted) {
+            throw new IllegalStateException("writes have already been executed");
+        }
+    }
+
+    /**
+     * Executes all remaining pending writes in order. Writes can only be executed
+     * once.
+     *
+     * @throws Exception if any write fails
+     */
+    public void execute() throws Exception {
+        checkNotExecuted();
+        isExecuted = true;
+
+        Instant start = Instant.now();
+
+        int numActions = actions.size();
+        executePending();
+
+        Instant end = Instant.now();
+        LOGGER.debug(
+            "executed {} pending writes in {}ms; {} rows in {} batches and actions, executed early in {} rounds",
+            numActions, Duration.between(start, end).toMillis(), numRows, numBatches, numEarlyExecutions //
+        );
+    }
+
+    private void executeBatch(Batch batch) throws SQLException {
+        int[] results = batch.ps.executeBatch();
+        for (int result : results) {
+            boolean isExpected = (result == Statement.SUCCESS_NO_INFO)
+                || (result == 1)
+                || ((result == 0) && (batch.expectedRows == ExpectedRows.AT_MOST_ONE));
+
+            if (!isExpected) {
+                throw new RuntimeException(
+                    "unexpected number of affected rows (" + result + ") in batch: " + batch.sql //
+                );
+            }
+        }
+
+        LOGGER.trace("executed batch of {} rows: {}", batch.size, batch.sql);
+    }
+
+    /**
+     * Returns the number of rows added to batches or actions, including rows
+     * which have already been executed early.
+     *
+     * @return number of staged rows
+     */
+    public int getNumRows() {
+        return numRows;
+    }
+
+    /**
+     * Discards all writes which have not been executed yet, releasing memory held
+     * by their actions. Statements are owned by the {@link PreparedStatementCache}
+     * and closed together with it.
+     */
+    public void close() {
+        for (Runnable onDiscard : discardHandlers) {
+            onDiscard.run();
+        }
+        discardHandlers.clear();
+
+        actions.clear();
+        openBatches.clear();
+        numPendingInstances.clear();
+    }
+}
@@ -0,0 +1,134 @@
+package org.vatplanner.importer.postgis.status.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Holds a single {@link PreparedStatement} per SQL text for the duration of a
+ * transaction. Reusing statements avoids parsing and planning the same SQL over
+ * and over and allows the JDBC driver to switch to server-side prepared
+ * statements.
+ *
+ * <p>
+ * Multiple instances can be requested for the same SQL, so that multiple JDBC
+ * batches of one statement can be bound before any of them is executed.
+ * </p>
+ *
+ * <p>
+ * Statements handed out by the cache must not be closed by callers; all
+ * statements are closed when the cache gets closed at the end of the
+ * transaction.
+ * </p>
+ */
+public class PreparedStatementCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PreparedStatementCache.class);
+
+    private final Connection db;
+    private final Map<String, List<PreparedStatement>> statements = new HashMap<>();
+    private int numStatements = 0;
+
+    private int hits = 0;
+    private int misses = 0;
+
+    public PreparedStatementCache(Connection db) {
+        this.db = db;
+    }
+
+    /**
+     * Returns the statement prepared for the given SQL. The statement is prepared
+     * only on first request.
+     *
+     * @param sql SQL to prepare
+     * @return statement prepared for given SQL; must not be closed by caller
+     * @throws SQLException if the statement could not be prepared
+     */
+    public PreparedStatement prepare(String sql) throws SQLException {
+        return prepare(sql, 0);
+    }
+
+    /**
+     * Returns the given instance of statements prepared for the same SQL. Each
+     * instance is prepared only on first request.
+     *
+     * @param sql SQL to prepare
+     * @param instance index of the instance to return, starting at 0; instances
+     *        must be requested in ascending order
+     * @return instance of statement prepared for given SQL; must not be closed by
+     *         caller
+     * @throws SQLException if the statement could not be prepared
+     */
+    public PreparedStatement prepare(String sql, int instance) throws SQLException {
+        List<PreparedStatement> instances = statements.computeIfAbsent(sql, x -> new ArrayList<>());
+
+        if (instance < instances.size()) {
+            hits++;
+            return instances.get(instance);
+        }
+
+        if (instance != instances.size()) {
+            throw new IllegalArgumentException(
+                "instance " + instance + " requested but only " + instances.size() + " prepared for: " + sql //
+            );
+        }
+
+        misses++;
+        PreparedStatement ps = db.prepareStatement(sql);
+        instances.add(ps);
+        numStatements++;
+
+        return ps;
+    }
+
+    /**
+     * Returns the number of requests which could be served by an already prepared
+     * statement.
+     *
+     * @return number of cache hits
+     */
+    public int getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of requests which required a new statement to be
+     * prepared.
+     *
+     * @return number of cache misses
+     */
+    public int getMisses() {
+        return misses;
+    }
+
+    /**
+     * Closes all cached statements. Failures to close individual statements are
+     * only logged.
+     */
+    public void close() {
+        LOGGER.debug(
+            "closing {} prepared statements for {} SQL; {} hits, {} misses",
+            numStatements, statements.size(), hits, misses //
+        );
+
+        for (Map.Entry<String, List<PreparedStatement>> entry : statements.entrySet()) {
+            for (PreparedStatement ps : entry.getValue()) {
+                try {
+                    ps.close();
+                } catch (SQLException ex) {
+                    LOGGER.warn("failed to close prepared statement: " + entry.getKey(), ex);
+                }
+            }
+        }
+
+        statements.clear();
+        numStatements = 0;
+    }
+}
@@ -0,0 +1,233 @@
+package org.vatplanner.importer.postgis.status.database;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Remembers IDs and time spans of all entities loaded from or saved to
+ * database, so rows to be loaded again after a restart can be preselected
+ * without querying time ranges on database.
+ *
+ * <p>
+ * The cache only knows about entities since it was last filled by a full
+ * preselection. It covers a later load only if that load starts at or after the
+ * same time, i.e. as long as loaded time windows only move forward. Entities
+ * which are no longer relevant to such windows are pruned upon each use and
+ * should also be pruned by {@link #prune(Instant, Duration)} while no loads are
+ * needed. Nothing is recorded before the first full preselection.
+ * </p>
+ *
+ * <p>
+ * Instances are not thread-safe.
+ * </p>
+ */
+class PreselectionCache {
+
+    private Instant coverageStart;
+
+    private final Map<Integer, Instant> reportFetchTimes = new HashMap<>();
+    private final Map<Integer, Instant> reportRecordTimes = new HashMap<>();
+    private final Map<Integer, Instant[]> connectionRecordTimes = new HashMap<>();
+    private final Map<Integer, Set<Instant>> flightPlanFirstSeenRecordTimes = new HashMap<>();
+
+    /**
+     * IDs of entities to load, as determined from cache.
+     */
+    static class Preselection {
+        final List<Integer> completeReportIds = new ArrayList<>();
+        final List<Integer> connectionIds = new ArrayList<>();
+        final List<Integer> flightIds = new ArrayList<>();
+    }
+
+    /**
+     * Checks if all entities relevant to a load starting at given fetch time have
+     * been recorded.
+     *
+     * @param earliestFetchTime earliest fetch time of reports to load completely
+     * @return true if the cache can be used to preselect the load, false if not
+     */
+    boolean covers(Instant earliestFetchTime) {
+        return (coverageStart != null) && !earliestFetchTime.isBefore(coverageStart);
+    }
+
+    /**
+     * Discards everything recorded and starts coverage at given fetch time. To be
+     * called before recording all entities of a full preselection.
+     *
+     * @param earliestFetchTime earliest fetch time of reports loaded completely
+     */
+    void reset(Instant earliestFetchTime) {
+        reportFetchTimes.clear();
+        reportRecordTimes.clear();
+        connectionRecordTimes.clear();
+        flightPlanFirstSeenRecordTimes.clear();
+
+        coverageStart = earliestFetchTime;
+    }
+
+    void recordReport(int reportId, Instant fetchTime, Instant recordTime) {
+        if (coverageStart == null) {
+            return;
+        }
+
+        reportFetchTimes.put(reportId, fetchTime);
+        reportRecordTimes.put(reportId, recordTime);
+    }
+
+    void recordConnection(int connectionId, Instant firstRecordTime, Instant lastRecordTime) {
+        if (coverageStart == null) {
+            return;
+        }
+
+        connectionRecordTimes.put(connectionId, new Instant[] { firstRecordTime, lastRecordTime });
+    }
+
+    void recordFlightPlan(int flightId, Instant firstSeenRecordTime) {
+        if (coverageStart == null) {
+            return;
+        }
+
+        flightPlanFirstSeenRecordTimes.computeIfAbsent(flightId, x -> new HashSet<>()).add(firstSeenRecordTime);
+    }
+
+    /**
+     * Determines IDs of entities to load, following the same rules as a full
+     * preselection on database: reports fetched at or after given time are
+     * loaded completely, connections are loaded if they overlap the record time
+     * span of those reports and flights are loaded if any flight plan may still
+     * have been retained during that time span. Entities no longer relevant to
+     * this or any later load are pruned.
+     *
+     * @param earliestFetchTime earliest fetch time of reports to load completely;
+     *        must be covered by cache
+     * @param flightPlanRetentionTime maximum time flight plans are retained
+     * @return IDs of entities to load
+     */
+    Preselection preselect(Instant earliestFetchTime, Duration flightPlanRetentionTime) {
+        if (!covers(earliestFetchTime)) {
+            throw new IllegalArgumentException(
+                "cache covers loads since " + coverageStart + ", requested " + earliestFetchTime //
+            );
+        }
+
+        Preselection preselection = new Preselection();
+        scan(earliestFetchTime, flightPlanRetentionTime, preselection);
+
+        return preselection;
+    }
+
+    /**
+     * Removes all entities which are not relevant to a load starting at given
+     * fetch time or any later load, without preselecting anything. Nothing
+     * happens if the cache does not cover such a load.
+     *
+     * @param earliestFetchTime earliest fetch time of reports the next load may
+     *        load completely
+     * @param flightPlanRetentionTime maximum time flight plans are retained
+     */
+    void prune(Instant earliestFetchTime, Duration flightPlanRetentionTime) {
+        if (covers(earliestFetchTime)) {
+            scan(earliestFetchTime, flightPlanRetentionTime, null);
+        }
+    }
+
+    private void scan(Instant earliestFetchTime, Duration flightPlanRetentionTime, Preselection preselection) {
+
+        Instant minRecordTime = null;
+        Instant maxRecordTime = null;
+        Iterator<Map.Entry<Integer, Instant>> reportIterator = reportFetchTimes.entrySet().iterator();
+        while (reportIterator.hasNext()) {
+            Map.Entry<Integer, Instant> entry = reportIterator.next();
+            int reportId = entry.getKey();
+            if (entry.getValue().isBefore(earliestFetchTime)) {
+                reportIterator.remove();
+                reportRecordTimes.remove(reportId);
+                continue;
+            }
+
+            if (preselection != null) {
+                preselection.completeReportIds.add(reportId);
+            }
+
+            Instant recordTime = reportRecordTimes.get(reportId);
+            if ((minRecordTime == null) || recordTime.isBefore(minRecordTime)) {
+                minRecordTime = recordTime;
+            }
+            if ((maxRecordTime == null) || recordTime.isAfter(maxRecordTime)) {
+                maxRecordTime = recordTime;
+            }
+        }
+
+        coverageStart = earliestFetchTime;
+
+        if (minRecordTime == null) {
+            // no time span to overlap, same as on database
+            return;
+        }
+
+        Instant windowStart = minRecordTime;
+        Instant windowEnd = maxRecordTime.plusSeconds(1);
+
+        Iterator<Map.Entry<Integer, Instant[]>> connectionIterator = connectionRecordTimes.entrySet().iterator();
+        while (connectionIterator.hasNext()) {
+            Map.Entry<Integer, Instant[]> entry = connectionIterator.next();
+            Instant[] recordTimes = entry.getValue();
+
+            if (overlaps(recordTimes[0], recordTimes[1], windowStart, windowEnd)) {
+                if (preselection != null) {
+                    preselection.connectionIds.add(entry.getKey());
+                }
+            } else if (recordTimes[1].isBefore(windowStart)) {
+                connectionIterator.remove();
+            }
+        }
+
+        Iterator<Map.Entry<Integer, Set<Instant>>> flightIterator = flightPlanFirstSeenRecordTimes.entrySet().iterator();
+        while (flightIterator.hasNext()) {
+            Map.Entry<Integer, Set<Instant>> entry = flightIterator.next();
+
+            boolean isRelevant = false;
+            for (Instant firstSeen : entry.getValue()) {
+                Instant retainedUntil = firstSeen.plus(flightPlanRetentionTime);
+                if (overlaps(firstSeen, retainedUntil, windowStart, windowEnd)) {
+                    if (preselection != null) {
+                        preselection.flightIds.add(entry.getKey());
+                    }
+                    isRelevant = true;
+                    break;
+                }
+
+                if (!retainedUntil.isBefore(windowStart)) {
+                    isRelevant = true;
+                }
+            }
+
+            if (!isRelevant) {
+                flightIterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Checks if two time periods overlap following semantics of SQL
+     * <code>OVERLAPS</code> on PostgreSQL: periods are half-open intervals unless
+     * start and end are equal in which case they represent a single instant.
+     * Start must not be after end.
+     */
+    static boolean overlaps(Instant start1, Instant end1, Instant start2, Instant end2) {
+        if (start1.isAfter(start2)) {
+            return start1.isBefore(end2);
+        } else if (start1.isBefore(start2)) {
+            return start2.isBefore(end1);
+        }
+
+        return true;
+    }
+}
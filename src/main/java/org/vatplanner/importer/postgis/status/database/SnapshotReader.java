@@ -0,0 +1,147 @@
+package org.vatplanner.importer.postgis.status.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetProvider;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.vatplanner.importer.postgis.status.utils.ExceptionalConsumer;
+
+/**
+ * Reads result sets concurrently over multiple pooled connections which all
+ * share the snapshot exported by another transaction, so all reads see exactly
+ * the same state of the database as the exporting transaction.
+ *
+ * <p>
+ * Results are read completely into {@link CachedRowSet}s which can then be
+ * processed on any thread while the connections have already been returned to
+ * the pool. The exporting transaction must remain open until all reads have
+ * been completed.
+ * </p>
+ */
+class SnapshotReader implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SnapshotReader.class);
+
+    private static final long THREAD_KEEP_ALIVE_SECONDS = 10;
+
+    private final ConnectionPool pool;
+    private final String snapshotId;
+    private final int fetchSize;
+    private final ExecutorService executor;
+
+    /**
+     * Exports the snapshot of the given transaction and prepares reading on the
+     * given number of threads.
+     *
+     * @param pool pool to borrow connections for concurrent reads from
+     * @param exportingDb connection of the transaction whose snapshot is to be
+     *        shared; must use isolation level REPEATABLE READ or higher
+     * @param numThreads maximum number of concurrent reads
+     * @param fetchSize number of rows to fetch per round trip; 0 fetches all rows
+     *        at once
+     * @throws SQLException if the snapshot cannot be exported
+     */
+    SnapshotReader(ConnectionPool pool, Connection exportingDb, int numThreads, int fetchSize) throws SQLException {
+        this.pool = pool;
+        this.fetchSize = fetchSize;
+
+        try (
+            Statement stmt = exportingDb.createStatement();
+            ResultSet rs = stmt.executeQuery("SELECT pg_export_snapshot()") //
+        ) {
+            if (!rs.next()) {
+                throw new SQLException("no snapshot has been exported");
+            }
+
+            snapshotId = rs.getString(1);
+        }
+
+        LOGGER.debug("exported snapshot {} for {} concurrent reads", snapshotId, numThreads);
+
+        // threads time out in case the reader does not get closed after an error
+        AtomicInteger threadCounter = new AtomicInteger();
+        ThreadPoolExecutor threadPool = new ThreadPoolExecutor(
+            numThreads, numThreads,
+            THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            runnable -> {
+                Thread thread = new Thread(runnable, "snapshot-reader-" + threadCounter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            } //
+        );
+        threadPool.allowCoreThreadTimeOut(true);
+        executor = threadPool;
+    }
+
+    /**
+     * Submits a query to be read within the shared snapshot.
+     *
+     * @param sql query to execute
+     * @param parameterSetter binds all parameters of the query
+     * @return all rows returned by the query
+     */
+    Future<CachedRowSet> submit(String sql, ExceptionalConsumer<PreparedStatement, SQLException> parameterSetter) {
+        return executor.submit(() -> read(sql, parameterSetter));
+    }
+
+    private CachedRowSet read(String sql, ExceptionalConsumer<PreparedStatement, SQLException> parameterSetter) throws SQLException, InterruptedException {
+        Instant start = Instant.now();
+
+        Connection db = pool.borrow();
+        try {
+            db.setAutoCommit(false);
+
+            try (Statement stmt = db.createStatement()) {
+                stmt.execute("SET TRANSACTION ISOLATION LEVEL REPEATABLE READ");
+                stmt.execute("SET TRANSACTION SNAPSHOT '" + snapshotId + "'");
+            }
+
+            CachedRowSet rowSet = RowSetProvider.newFactory().createCachedRowSet();
+            try (PreparedStatement ps = db.prepareStatement(sql)) {
+                parameterSetter.accept(ps);
+                ps.setFetchSize(fetchSize);
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    rowSet.populate(rs);
+                }
+            }
+
+            db.commit();
+
+            Instant end = Instant.now();
+            LOGGER.debug(
+                "read {} rows in {}ms: {}",
+                rowSet.size(), Duration.between(start, end).toMillis(), sql //
+            );
+
+            return rowSet;
+        } catch (SQLException ex) {
+            // transaction is rolled back by pool upon release
+            LOGGER.warn("SQL query failed: " + sql, ex);
+            throw ex;
+        } finally {
+            pool.release(db);
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
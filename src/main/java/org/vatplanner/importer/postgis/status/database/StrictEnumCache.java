@@ -1,13 +1,22 @@
 package org.vatplanner.importer.postgis.status.database;
 
+import java.lang.reflect.Array;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.Function;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 /**
  * A cache reading a set of ID and name pairs from database treated as an
  * enumeration mapped to a Java enum.
@@ -18,32 +27,79 @@ import java.util.function.Function;
  * {@link IllegalArgumentException}s, hence this is a "strict" cache.
  * </p>
  *
+ * <p>
+ * Mappings are held in arrays indexed by {@link Enum#ordinal()} and database
+ * ID, so lookups neither box nor hash. Database IDs are expected to be small
+ * and dense; IDs above {@link #MAX_ID} are rejected as they would require an
+ * unreasonably large array. Instances are immutable and can be shared by all
+ * transactions.
+ * </p>
+ *
+ * <p>
+ * Java enums missing from database are only logged as a warning upon
+ * instantiation and fail when they are looked up.
+ * {@link #requireAllEnumsInDatabase()} should be called on startup if all of
+ * them are needed.
+ * </p>
+ *
  * @param <T> Java enum to map names from/to
  */
-public class StrictEnumCache<T extends Enum> {
+public class StrictEnumCache<T extends Enum<T>> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StrictEnumCache.class);
+
+    private static final int UNKNOWN_ID = -1;
 
-    private final Map<T, Integer> idByEnum = new HashMap<>();
-    private final Map<Integer, T> enumById = new HashMap<>();
+    /**
+     * Maximum database ID accepted; limits the size of the array indexed by ID.
+     */
+    static final int MAX_ID = 1023;
 
-    private final Function<String, T> mappingNameToEnum;
+    private final T[] enumValues;
+    private final int[] idByOrdinal;
+    private final T[] enumById;
 
     /**
      * Initializes the cache by immediately running the given query.
      *
      * @param db database connection
      * @param sql query to read id (column 1) and enumeration name (column 2)
+     * @param enumClass Java enum class to map to
      * @param mappingNameToEnum maps an enumeration name read from database to a
      *        Java enum
      * @throws SQLException if query fails
      * @throws RuntimeException if data is inconsistent (expecting unique mapping to
-     *         both sides)
+     *         both sides and IDs between 0 and {@link #MAX_ID})
      */
-    public StrictEnumCache(Connection db, String sql, Function<String, T> mappingNameToEnum) throws SQLException {
-        this.mappingNameToEnum = mappingNameToEnum;
-        readFromDatabase(db, sql);
+    public StrictEnumCache(Connection db, String sql, Class<T> enumClass, Function<String, T> mappingNameToEnum) throws SQLException {
+        enumValues = enumClass.getEnumConstants();
+
+        idByOrdinal = new int[enumValues.length];
+        Arrays.fill(idByOrdinal, UNKNOWN_ID);
+
+        Map<Integer, T> mappings = readFromDatabase(db, sql, mappingNameToEnum);
+
+        int maxId = mappings.keySet().stream().mapToInt(Integer::intValue).max().orElse(UNKNOWN_ID);
+        enumById = (T[]) Array.newInstance(enumClass, maxId + 1);
+        for (Map.Entry<Integer, T> mapping : mappings.entrySet()) {
+            int id = mapping.getKey();
+            T enumValue = mapping.getValue();
+
+            enumById[id] = enumValue;
+            idByOrdinal[enumValue.ordinal()] = id;
+        }
+
+        for (T enumValue : enumValues) {
+            if (idByOrdinal[enumValue.ordinal()] == UNKNOWN_ID) {
+                LOGGER.warn("Java enum {} does not exist in database and cannot be recorded", enumValue);
+            }
+        }
     }
 
-    private void readFromDatabase(Connection db, String sql) throws SQLException {
+    private Map<Integer, T> readFromDatabase(Connection db, String sql, Function<String, T> mappingNameToEnum) throws SQLException {
+        Map<Integer, T> enumById = new HashMap<>();
+        Set<T> recordedEnums = new HashSet<>();
+
         try (
             Statement stmt = db.createStatement();
             ResultSet rs = stmt.executeQuery(sql);) {
@@ -52,12 +108,22 @@ public class StrictEnumCache<T extends Enum> {
                 int id = rs.getInt(1);
                 String name = rs.getString(2);
 
+                if (id < 0) {
+                    throw new RuntimeException("database name \"" + name + "\" has negative ID " + id);
+                }
+
+                if (id > MAX_ID) {
+                    throw new RuntimeException(
+                        "database name \"" + name + "\" has ID " + id + " exceeding maximum of " + MAX_ID //
+                    );
+                }
+
                 T enumValue = mappingNameToEnum.apply(name);
                 if (enumValue == null) {
                     throw new RuntimeException("database name \"" + name + "\" could not be resolved to a Java enum");
                 }
 
-                if (idByEnum.containsKey(enumValue)) {
+                if (!recordedEnums.add(enumValue)) {
                     throw new RuntimeException(
                         "database name \"" + name
                             + "\" resolved to ambiguous Java enum " + enumValue
@@ -72,10 +138,29 @@ public class StrictEnumCache<T extends Enum> {
                     );
                 }
 
-                idByEnum.put(enumValue, id);
                 enumById.put(id, enumValue);
             }
         }
+
+        return enumById;
+    }
+
+    /**
+     * Checks that all Java enums exist in database.
+     *
+     * @throws IllegalStateException if any Java enum does not exist in database
+     */
+    public void requireAllEnumsInDatabase() {
+        List<T> missing = new ArrayList<>();
+        for (T enumValue : enumValues) {
+            if (idByOrdinal[enumValue.ordinal()] == UNKNOWN_ID) {
+                missing.add(enumValue);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            throw new IllegalStateException("Java enums " + missing + " do not exist in database");
+        }
     }
 
     /**
@@ -86,9 +171,9 @@ public class StrictEnumCache<T extends Enum> {
      * @throws IllegalArgumentException if enum is unknown to database
      */
     public int getId(T enumValue) {
-        Integer id = idByEnum.get(enumValue);
+        int id = (enumValue != null) ? idByOrdinal[enumValue.ordinal()] : UNKNOWN_ID;
 
-        if (id == null) {
+        if (id == UNKNOWN_ID) {
             throw new IllegalArgumentException("Java enum " + enumValue + " does not exist in database");
         }
 
@@ -103,7 +188,7 @@ public class StrictEnumCache<T extends Enum> {
      * @throws IllegalArgumentException if database ID is unknown
      */
     public T getEnum(int id) {
-        T enumValue = enumById.get(id);
+        T enumValue = ((id >= 0) && (id < enumById.length)) ? enumById[id] : null;
 
         if (enumValue == null) {
             throw new IllegalArgumentException("ID " + id + " is unknown");
@@ -1,10 +1,15 @@
 package org.vatplanner.importer.postgis.status.entities;
 
 import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.time.Instant;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -12,6 +17,8 @@ import org.vatplanner.dataformats.vatsimpublic.entities.status.Connection;
 import org.vatplanner.dataformats.vatsimpublic.entities.status.Member;
 import org.vatplanner.dataformats.vatsimpublic.entities.status.Report;
 import org.vatplanner.importer.postgis.status.DirtyEntityTracker;
+import org.vatplanner.importer.postgis.status.database.Caches;
+import org.vatplanner.importer.postgis.status.database.PendingWrites.ExpectedRows;
 
 /**
  * {@link Connection} extended for exchange with PostGIS.
@@ -20,13 +27,40 @@ public class RelationalConnection extends Connection implements DirtyMark {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(RelationalConnection.class);
 
-    private final DirtyEntityTracker tracker;
+    private final DirtyEntityTracker.Entry<RelationalConnection> dirtyEntry;
+
+    public static final String SQL_INSERT = "INSERT INTO connections (connection_id, vatsimid, logontime, firstreport_id, lastreport_id) VALUES (?, ?, ?, ?, ?)";
+
+    private static final Map<Set<Column>, String> SQL_UPDATE_BY_COLUMNS = new ConcurrentHashMap<>();
 
     private int databaseId = -1;
 
+    // state as last persisted to or loaded from database, recorded when marked
+    // clean
+    private int persistedVatsimId = -1;
+    private Instant persistedLogonTime;
+    private Report persistedFirstReport;
+    private Report persistedLastReport;
+
+    /**
+     * Columns which can be updated.
+     */
+    private enum Column {
+        VATSIMID("vatsimid"),
+        LOGONTIME("logontime"),
+        FIRSTREPORT_ID("firstreport_id"),
+        LASTREPORT_ID("lastreport_id");
+
+        private final String name;
+
+        private Column(String name) {
+            this.name = name;
+        }
+    }
+
     public RelationalConnection(DirtyEntityTracker tracker, Member member, Instant logonTime) {
         super(member, logonTime);
-        this.tracker = tracker;
+        this.dirtyEntry = tracker.register(RelationalConnection.class, this);
         markDirty();
     }
 
@@ -46,85 +80,147 @@ public class RelationalConnection extends Connection implements DirtyMark {
 
     @Override
     public void markDirty() {
-        tracker.recordAsDirty(RelationalConnection.class, this);
+        dirtyEntry.markDirty();
     }
 
     @Override
     public boolean isDirty() {
-        return tracker.isDirty(RelationalConnection.class, this);
+        return dirtyEntry.isDirty();
     }
 
     @Override
     public void markClean() {
-        tracker.recordAsClean(RelationalConnection.class, this);
+        dirtyEntry.markClean();
+
+        persistedVatsimId = getMember().getVatsimId();
+        persistedLogonTime = getLogonTime();
+        persistedFirstReport = getFirstReport();
+        persistedLastReport = getLastReport();
     }
 
-    public void upsert(java.sql.Connection db) throws SQLException {
-        if (getDatabaseId() > 0) {
-            update(db);
-        } else {
-            insert(db);
+    /**
+     * Binds all values of this connection to a {@link PreparedStatement} for
+     * {@link #SQL_INSERT}. A database ID must have been assigned before. The
+     * statement is neither executed nor added to a batch and the entity is not
+     * marked clean, this has to be handled by the caller.
+     *
+     * @param ps statement prepared for {@link #SQL_INSERT}
+     * @throws SQLException if binding any parameter fails
+     */
+    public void bindInsert(PreparedStatement ps) throws SQLException {
+        if (getDatabaseId() <= 0) {
+            throw new IllegalStateException("connections require an ID to be assigned before insert");
         }
-    }
 
-    public void insert(java.sql.Connection db) throws SQLException {
         RelationalReport firstReport = (RelationalReport) getFirstReport();
         RelationalReport lastReport = (RelationalReport) getLastReport();
 
         LOGGER.trace(
-            "INSERT connection: logon {}, first report {}, last report {}",
-            getLogonTime(), firstReport.getRecordTime(), lastReport.getRecordTime() //
-        );
-
-        PreparedStatement ps = db.prepareStatement(
-            "INSERT INTO connections (vatsimid, logontime, firstreport_id, lastreport_id) VALUES (?, ?, ?, ?) RETURNING connection_id" //
+            "INSERT connection: ID {}, logon {}, first report {}, last report {}",
+            getDatabaseId(), getLogonTime(), firstReport.getRecordTime(), lastReport.getRecordTime() //
         );
-        ps.setInt(1, getMember().getVatsimId());
-        ps.setTimestamp(2, Timestamp.from(getLogonTime()));
-        ps.setInt(3, firstReport.getDatabaseId());
-        ps.setInt(4, lastReport.getDatabaseId());
-
-        ResultSet rs = ps.executeQuery();
-
-        rs.next();
-        int connectionId = rs.getInt("connection_id");
 
-        rs.close();
-        ps.close();
+        ps.setInt(1, getDatabaseId());
+        ps.setInt(2, getMember().getVatsimId());
+        ps.setTimestamp(3, Timestamp.from(getLogonTime()));
+        ps.setInt(4, firstReport.getDatabaseId());
+        ps.setInt(5, lastReport.getDatabaseId());
+    }
 
-        if (connectionId <= 0) {
-            throw new RuntimeException("unexpected connection ID after insert: " + connectionId);
+    /**
+     * Adds an update of all columns changed since this connection was last
+     * persisted to or loaded from database to pending writes and marks the
+     * connection clean. No update is issued if nothing changed.
+     *
+     * @param caches caches holding pending writes
+     * @throws Exception if staging fails
+     */
+    public void update(Caches caches) throws Exception {
+        Set<Column> changedColumns = getChangedColumns();
+        if (changedColumns.isEmpty()) {
+            LOGGER.trace("UPDATE connection: ID {} unchanged, skipping", getDatabaseId());
+            markClean();
+            return;
         }
 
-        setDatabaseId(connectionId);
-        markClean();
-    }
-
-    public void update(java.sql.Connection db) throws SQLException {
         RelationalReport firstReport = (RelationalReport) getFirstReport();
         RelationalReport lastReport = (RelationalReport) getLastReport();
 
         LOGGER.trace(
-            "UPDATE connection: ID {}, logon {}, first report {}, last report {}",
-            getDatabaseId(), getLogonTime(), firstReport.getRecordTime(), lastReport.getRecordTime() //
+            "UPDATE connection: ID {}, logon {}, first report {}, last report {}, changed {}",
+            getDatabaseId(), getLogonTime(), firstReport.getRecordTime(), lastReport.getRecordTime(), changedColumns //
         );
 
-        PreparedStatement ps = db.prepareStatement(
-            "UPDATE connections SET vatsimid=?, logontime=?, firstreport_id=?, lastreport_id=? WHERE connection_id=?" //
+        caches.getWrites().addBatch(
+            SQL_UPDATE_BY_COLUMNS.computeIfAbsent(changedColumns, RelationalConnection::buildUpdateSql),
+            ExpectedRows.EXACTLY_ONE,
+            ps -> {
+                int i = 1;
+                for (Column column : changedColumns) {
+                    switch (column) {
+                        case VATSIMID:
+                            ps.setInt(i++, getMember().getVatsimId());
+                            break;
+
+                        case LOGONTIME:
+                            ps.setTimestamp(i++, Timestamp.from(getLogonTime()));
+                            break;
+
+                        case FIRSTREPORT_ID:
+                            ps.setInt(i++, firstReport.getDatabaseId());
+                            break;
+
+                        case LASTREPORT_ID:
+                            ps.setInt(i++, lastReport.getDatabaseId());
+                            break;
+
+                        default:
+                            throw new UnsupportedOperationException("unhandled column " + column);
+                    }
+                }
+                ps.setInt(i, getDatabaseId());
+            } //
         );
-        ps.setInt(1, getMember().getVatsimId());
-        ps.setTimestamp(2, Timestamp.from(getLogonTime()));
-        ps.setInt(3, firstReport.getDatabaseId());
-        ps.setInt(4, lastReport.getDatabaseId());
-        ps.setInt(5, getDatabaseId());
-
-        int numAffected = ps.executeUpdate();
-        if (numAffected != 1) {
-            throw new RuntimeException("unexpected number of affected rows (" + numAffected + ") following update");
+
+        markClean();
+    }
+
+    /**
+     * Checks if the last report is the only value changed since this connection
+     * was last persisted to or loaded from database.
+     *
+     * @return true if only the last report changed, false if nothing or more has
+     *         changed
+     */
+    public boolean hasOnlyLastReportChanged() {
+        return getChangedColumns().equals(EnumSet.of(Column.LASTREPORT_ID));
+    }
+
+    private Set<Column> getChangedColumns() {
+        Set<Column> changedColumns = EnumSet.noneOf(Column.class);
+
+        if (getMember().getVatsimId() != persistedVatsimId) {
+            changedColumns.add(Column.VATSIMID);
         }
 
-        ps.close();
+        if (!Objects.equals(getLogonTime(), persistedLogonTime)) {
+            changedColumns.add(Column.LOGONTIME);
+        }
 
-        markClean();
+        if (getFirstReport() != persistedFirstReport) {
+            changedColumns.add(Column.FIRSTREPORT_ID);
+        }
+
+        if (getLastReport() != persistedLastReport) {
+            changedColumns.add(Column.LASTREPORT_ID);
+        }
+
+        return changedColumns;
+    }
+
+    private static String buildUpdateSql(Set<Column> columns) {
+        return columns.stream()
+            .map(column -> column.name + "=?")
+            .collect(Collectors.joining(", ", "UPDATE connections SET ", " WHERE connection_id=?"));
     }
 }
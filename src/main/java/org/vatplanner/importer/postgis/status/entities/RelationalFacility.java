@@ -1,14 +1,13 @@
 package org.vatplanner.importer.postgis.status.entities;
 
-import java.sql.PreparedStatement;
-import java.sql.SQLException;
-
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.vatplanner.dataformats.vatsimpublic.entities.status.Connection;
 import org.vatplanner.dataformats.vatsimpublic.entities.status.Facility;
 import org.vatplanner.dataformats.vatsimpublic.entities.status.FacilityType;
 import org.vatplanner.importer.postgis.status.DirtyEntityTracker;
+import org.vatplanner.importer.postgis.status.database.Caches;
+import org.vatplanner.importer.postgis.status.database.PendingWrites.ExpectedRows;
 
 /**
  * {@link Facility} extended for exchange with PostGIS.
@@ -17,13 +16,13 @@ public class RelationalFacility extends Facility implements DirtyMark {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(RelationalFacility.class);
 
-    private final DirtyEntityTracker tracker;
+    private final DirtyEntityTracker.Entry<RelationalFacility> dirtyEntry;
 
     private boolean hasRecordInDatabase = false;
 
     public RelationalFacility(DirtyEntityTracker tracker, String name) {
         super(name);
-        this.tracker = tracker;
+        this.dirtyEntry = tracker.register(RelationalFacility.class, this);
         markDirty();
     }
 
@@ -48,17 +47,17 @@ public class RelationalFacility extends Facility implements DirtyMark {
 
     @Override
     public void markDirty() {
-        tracker.recordAsDirty(RelationalFacility.class, this);
+        dirtyEntry.markDirty();
     }
 
     @Override
     public boolean isDirty() {
-        return tracker.isDirty(RelationalFacility.class, this);
+        return dirtyEntry.isDirty();
     }
 
     @Override
     public void markClean() {
-        tracker.recordAsClean(RelationalFacility.class, this);
+        dirtyEntry.markClean();
     }
 
     public RelationalFacility setHasRecordInDatabase(boolean hasRecordInDatabase) {
@@ -66,7 +65,7 @@ public class RelationalFacility extends Facility implements DirtyMark {
         return this;
     }
 
-    public void insert(java.sql.Connection db) throws SQLException {
+    public void insert(Caches caches) throws Exception {
         if (hasRecordInDatabase) {
             throw new UnsupportedOperationException(
                 "updating facilities is not implemented: name \"" + getName() //
@@ -86,13 +85,14 @@ public class RelationalFacility extends Facility implements DirtyMark {
         RelationalConnection connection = (RelationalConnection) getConnection();
         LOGGER.trace("INSERT facility: name {}, connection {}", getName(), connection.getDatabaseId());
 
-        PreparedStatement ps = db.prepareStatement("INSERT INTO facilities (name, connection_id) VALUES (?, ?)");
-        ps.setString(1, getName());
-        ps.setInt(2, connection.getDatabaseId());
-
-        ps.executeUpdate();
-
-        ps.close();
+        caches.getWrites().addBatch(
+            "INSERT INTO facilities (name, connection_id) VALUES (?, ?)",
+            ExpectedRows.EXACTLY_ONE,
+            ps -> {
+                ps.setString(1, getName());
+                ps.setInt(2, connection.getDatabaseId());
+            } //
+        );
 
         setHasRecordInDatabase(true);
         markClean();
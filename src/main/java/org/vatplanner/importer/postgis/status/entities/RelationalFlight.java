@@ -1,19 +1,22 @@
 package org.vatplanner.importer.postgis.status.entities;
 
 import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.vatplanner.dataformats.vatsimpublic.entities.status.BarometricPressure;
 import org.vatplanner.dataformats.vatsimpublic.entities.status.Connection;
 import org.vatplanner.dataformats.vatsimpublic.entities.status.Flight;
 import org.vatplanner.dataformats.vatsimpublic.entities.status.FlightEvent;
+import org.vatplanner.dataformats.vatsimpublic.entities.status.GeoCoordinates;
 import org.vatplanner.dataformats.vatsimpublic.entities.status.Member;
 import org.vatplanner.dataformats.vatsimpublic.entities.status.TrackPoint;
 import org.vatplanner.importer.postgis.status.DirtyEntityTracker;
 import org.vatplanner.importer.postgis.status.database.Caches;
+import org.vatplanner.importer.postgis.status.database.CopyStream;
+import org.vatplanner.importer.postgis.status.database.PendingWrites.ExpectedRows;
 import org.vatplanner.importer.postgis.status.database.StrictEnumCache;
 
 /**
@@ -23,13 +26,19 @@ public class RelationalFlight extends Flight implements DirtyMark {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(RelationalFlight.class);
 
-    private final DirtyEntityTracker tracker;
+    private final DirtyEntityTracker.Entry<RelationalFlight> dirtyEntry;
+
+    public static final String SQL_INSERT = "INSERT INTO flights (flight_id, vatsimid, callsign) VALUES (?, ?, ?)";
 
     private int databaseId = -1;
 
+    // latest values of track points, shared with following track points
+    private GeoCoordinates sharedTrackPointCoordinates;
+    private BarometricPressure sharedTrackPointQnh;
+
     public RelationalFlight(DirtyEntityTracker tracker, Member member, String callsign) {
         super(member, callsign);
-        this.tracker = tracker;
+        this.dirtyEntry = tracker.register(RelationalFlight.class, this);
         markDirty();
     }
 
@@ -58,100 +67,177 @@ public class RelationalFlight extends Flight implements DirtyMark {
         return this;
     }
 
+    /**
+     * Returns an instance holding the same coordinates as given, shared with
+     * previous track points of this flight if possible. Aircraft mostly report
+     * the same position while stationary, so this avoids holding one instance per
+     * track point. Instances are only shared if all values are equal.
+     *
+     * @param coordinates coordinates of a track point
+     * @return shared instance equal to given coordinates
+     */
+    GeoCoordinates shareTrackPointCoordinates(GeoCoordinates coordinates) {
+        GeoCoordinates shared = sharedTrackPointCoordinates;
+        if ((shared != null)
+            && (shared.getLatitude() == coordinates.getLatitude())
+            && (shared.getLongitude() == coordinates.getLongitude())
+            && (shared.getAltitudeFeet() == coordinates.getAltitudeFeet())
+            && (shared.getAltitudeMeters() == coordinates.getAltitudeMeters())) {
+            return shared;
+        }
+
+        sharedTrackPointCoordinates = coordinates;
+        return coordinates;
+    }
+
+    /**
+     * Returns an instance holding the same QNH as given, shared with previous
+     * track points of this flight if possible. QNH rarely changes during a flight,
+     * so this avoids holding one instance per track point. Instances are only
+     * shared if all values are equal.
+     *
+     * @param qnh QNH of a track point
+     * @return shared instance equal to given QNH
+     */
+    BarometricPressure shareTrackPointQnh(BarometricPressure qnh) {
+        BarometricPressure shared = sharedTrackPointQnh;
+        if ((shared != null)
+            && (shared.getHectopascals() == qnh.getHectopascals())
+            && (shared.getInchesOfMercury() == qnh.getInchesOfMercury())) {
+            return shared;
+        }
+
+        sharedTrackPointQnh = qnh;
+        return qnh;
+    }
+
     @Override
     public void markDirty() {
-        tracker.recordAsDirty(RelationalFlight.class, this);
+        dirtyEntry.markDirty();
     }
 
     @Override
     public boolean isDirty() {
-        return tracker.isDirty(RelationalFlight.class, this);
+        return dirtyEntry.isDirty();
     }
 
     @Override
     public void markClean() {
-        tracker.recordAsClean(RelationalFlight.class, this);
+        dirtyEntry.markClean();
     }
 
-    public void insert(java.sql.Connection db, Caches caches) throws SQLException {
+    /**
+     * Binds all values of this flight to a {@link PreparedStatement} for
+     * {@link #SQL_INSERT}. A database ID must have been assigned before. The
+     * statement is neither executed nor added to a batch and the entity is not
+     * marked clean, this has to be handled by the caller. Associations need to be
+     * recorded separately after the flight has been inserted.
+     *
+     * @param ps statement prepared for {@link #SQL_INSERT}
+     * @throws SQLException if binding any parameter fails
+     */
+    public void bindInsert(PreparedStatement ps) throws SQLException {
         if (getDatabaseId() <= 0) {
-            // insert currently only stores immutable information, updates mean that
-            // connections (m:n table) or events might have changed
-            insertFlight(db);
+            throw new IllegalStateException("flights require an ID to be assigned before insert");
         }
 
-        insertConnections(db);
-        insertEvents(db, caches.getFlightEvents());
-
-        markClean();
-    }
-
-    private void insertFlight(java.sql.Connection db) throws SQLException {
-        LOGGER.trace("INSERT flight: callsign {}", getCallsign());
+        LOGGER.trace("INSERT flight: ID {}, callsign {}", getDatabaseId(), getCallsign());
 
         // TODO: save flag or number of reports if affected by reconstruction?
-        PreparedStatement ps = db.prepareStatement( //
-            "INSERT INTO flights (vatsimid, callsign) VALUES (?, ?) RETURNING flight_id" //
-        );
-        ps.setInt(1, getMember().getVatsimId());
-        ps.setString(2, getCallsign());
-
-        ResultSet rs = ps.executeQuery();
+        ps.setInt(1, getDatabaseId());
+        ps.setInt(2, getMember().getVatsimId());
+        ps.setString(3, getCallsign());
+    }
 
-        rs.next();
-        int flightId = rs.getInt("flight_id");
+    /**
+     * Adds inserts of all associations to connections and events to pending
+     * writes. The flight itself must already have been inserted before. The
+     * entity is marked clean afterwards.
+     *
+     * @param caches caches to resolve enumerations and stage writes
+     * @throws Exception if staging any insert fails
+     */
+    public void insertAssociations(Caches caches) throws Exception {
+        insertConnectionAssociations(caches);
+        insertEvents(caches);
 
-        rs.close();
-        ps.close();
+        markClean();
+    }
 
-        if (flightId <= 0) {
-            throw new RuntimeException("unexpected flight ID after insert: " + flightId);
+    /**
+     * Adds inserts of all associations to connections to pending writes. The
+     * flight itself must already have been inserted before. Events are not
+     * inserted and the entity is not marked clean, events have to be stored
+     * separately by the caller.
+     *
+     * @param caches caches to stage writes
+     * @throws Exception if staging any insert fails
+     */
+    public void insertConnectionAssociations(Caches caches) throws Exception {
+        if (getDatabaseId() <= 0) {
+            throw new IllegalStateException("flight has not been inserted, unable to record associations");
         }
 
-        setDatabaseId(flightId);
+        // updates mean that connections (m:n table) or events might have changed
+        insertConnections(caches);
     }
 
-    private void insertConnections(java.sql.Connection db) throws SQLException {
+    private void insertConnections(Caches caches) throws Exception {
         for (Connection connection : getConnections()) {
-            insertConnection(db, (RelationalConnection) connection);
+            insertConnection(caches, (RelationalConnection) connection);
         }
     }
 
-    private void insertConnection(java.sql.Connection db, RelationalConnection connection) throws SQLException {
+    private void insertConnection(Caches caches, RelationalConnection connection) throws Exception {
         LOGGER.trace("INSERT m:n flight={} connection={}", getDatabaseId(), connection.getDatabaseId());
 
-        PreparedStatement ps = db.prepareStatement(
-            "INSERT INTO connections_flights (flight_id, connection_id) VALUES (?, ?) ON CONFLICT DO NOTHING" //
+        caches.getWrites().addBatch(
+            "INSERT INTO connections_flights (flight_id, connection_id) VALUES (?, ?) ON CONFLICT DO NOTHING",
+            ExpectedRows.AT_MOST_ONE,
+            ps -> {
+                ps.setInt(1, getDatabaseId());
+                ps.setInt(2, connection.getDatabaseId());
+            } //
         );
-        ps.setInt(1, getDatabaseId());
-        ps.setInt(2, connection.getDatabaseId());
-
-        ps.executeUpdate();
-
-        ps.close();
     }
 
-    private void insertEvents(java.sql.Connection db, StrictEnumCache<FlightEvent> flightEvents) throws SQLException {
+    private void insertEvents(Caches caches) throws Exception {
         for (Map.Entry<TrackPoint, FlightEvent> entry : this.getEvents().entrySet()) {
-            insertEvent(db, flightEvents, entry.getKey(), entry.getValue());
+            insertEvent(caches, entry.getKey(), entry.getValue());
         }
     }
 
-    private void insertEvent(java.sql.Connection db, StrictEnumCache<FlightEvent> flightEvents, TrackPoint trackPoint, FlightEvent event) throws SQLException {
+    private void insertEvent(Caches caches, TrackPoint trackPoint, FlightEvent event) throws Exception {
         int reportId = ((RelationalReport) trackPoint.getReport()).getDatabaseId();
-        int eventId = flightEvents.getId(event);
+        int eventId = caches.getFlightEvents().getId(event);
 
         LOGGER.trace("INSERT m:n flight={} report={} flightevent={}/{}", getDatabaseId(), reportId, event, eventId);
 
-        PreparedStatement ps = db.prepareStatement(
-            "INSERT INTO trackpoints_flightevents (flight_id, report_id, flightevent_id) VALUES (?, ?, ?) ON CONFLICT DO NOTHING" //
+        caches.getWrites().addBatch(
+            "INSERT INTO trackpoints_flightevents (flight_id, report_id, flightevent_id) VALUES (?, ?, ?) ON CONFLICT DO NOTHING",
+            ExpectedRows.AT_MOST_ONE,
+            ps -> {
+                ps.setInt(1, getDatabaseId());
+                ps.setInt(2, reportId);
+                ps.setInt(3, eventId);
+            } //
         );
-        ps.setInt(1, getDatabaseId());
-        ps.setInt(2, reportId);
-        ps.setInt(3, eventId);
-
-        ps.executeUpdate();
+    }
 
-        ps.close();
+    /**
+     * Encodes all events of this flight as rows of flight ID, report ID and
+     * flight event ID. The entity is not marked clean, this has to be handled by
+     * the caller.
+     *
+     * @param stream stream of an operation copying event rows
+     * @param flightEvents cache to resolve IDs of flight events
+     */
+    public void encodeEventCopyRows(CopyStream stream, StrictEnumCache<FlightEvent> flightEvents) {
+        for (Map.Entry<TrackPoint, FlightEvent> entry : this.getEvents().entrySet()) {
+            stream.appendInt(getDatabaseId())
+                .appendInt(((RelationalReport) entry.getKey().getReport()).getDatabaseId())
+                .appendInt(flightEvents.getId(entry.getValue()))
+                .endRow();
+        }
     }
 }
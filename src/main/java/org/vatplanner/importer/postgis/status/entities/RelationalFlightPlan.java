@@ -1,6 +1,5 @@
 package org.vatplanner.importer.postgis.status.entities;
 
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Timestamp;
@@ -17,6 +16,8 @@ import org.vatplanner.dataformats.vatsimpublic.entities.status.FlightPlan;
 import org.vatplanner.dataformats.vatsimpublic.entities.status.FlightPlanType;
 import org.vatplanner.dataformats.vatsimpublic.entities.status.Report;
 import org.vatplanner.importer.postgis.status.DirtyEntityTracker;
+import org.vatplanner.importer.postgis.status.database.Caches;
+import org.vatplanner.importer.postgis.status.database.PendingWrites.ExpectedRows;
 
 /**
  * {@link FlightPlan} extended for exchange with PostGIS.
@@ -25,7 +26,7 @@ public class RelationalFlightPlan extends FlightPlan implements DirtyMark {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(RelationalFlight.class);
 
-    private final DirtyEntityTracker tracker;
+    private final DirtyEntityTracker.Entry<RelationalFlightPlan> dirtyEntry;
 
     private static final Pattern PATTERN_AIRPORT_CODE = Pattern.compile(
         "^([a-z0-9]+)[^a-z0-9].*$",
@@ -35,7 +36,7 @@ public class RelationalFlightPlan extends FlightPlan implements DirtyMark {
 
     public RelationalFlightPlan(DirtyEntityTracker tracker, Flight flight, int revision) {
         super(flight, revision);
-        this.tracker = tracker;
+        this.dirtyEntry = tracker.register(RelationalFlightPlan.class, this);
         markDirty();
     }
 
@@ -115,17 +116,17 @@ public class RelationalFlightPlan extends FlightPlan implements DirtyMark {
 
     @Override
     public void markDirty() {
-        tracker.recordAsDirty(RelationalFlightPlan.class, this);
+        dirtyEntry.markDirty();
     }
 
     @Override
     public boolean isDirty() {
-        return tracker.isDirty(RelationalFlightPlan.class, this);
+        return dirtyEntry.isDirty();
     }
 
     @Override
     public void markClean() {
-        tracker.recordAsClean(RelationalFlightPlan.class, this);
+        dirtyEntry.markClean();
     }
 
     @Override
@@ -172,9 +173,19 @@ public class RelationalFlightPlan extends FlightPlan implements DirtyMark {
         return airportCode;
     }
 
-    public void insert(Connection db) throws SQLException {
+    public void insert(Caches caches) throws Exception {
         // TODO: change to UPSERT
 
+        caches.getWrites().addBatch(
+            "INSERT INTO flightplans (flight_id, revision, firstseen_report_id, flightplantype, departuretimeplanned, route, altitudefeet, minutesenroute, minutesfuel, departureairport, destinationairport, alternateairport, aircrafttype) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+            ExpectedRows.EXACTLY_ONE,
+            this::bindInsert //
+        );
+
+        markClean();
+    }
+
+    private void bindInsert(PreparedStatement ps) throws SQLException {
         RelationalFlight flight = (RelationalFlight) getFlight();
 
         LOGGER.trace(
@@ -184,9 +195,6 @@ public class RelationalFlightPlan extends FlightPlan implements DirtyMark {
             getAircraftType(), getEstimatedTimeEnroute(), getEstimatedTimeFuel() //
         );
 
-        PreparedStatement ps = db.prepareStatement(
-            "INSERT INTO flightplans (flight_id, revision, firstseen_report_id, flightplantype, departuretimeplanned, route, altitudefeet, minutesenroute, minutesfuel, departureairport, destinationairport, alternateairport, aircrafttype) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)" //
-        );
         ps.setInt(1, flight.getDatabaseId());
         ps.setInt(2, getRevision());
         ps.setInt(3, ((RelationalReport) getReportFirstSeen()).getDatabaseId());
@@ -239,11 +247,5 @@ public class RelationalFlightPlan extends FlightPlan implements DirtyMark {
         }
 
         ps.setString(13, getAircraftType());
-
-        ps.executeUpdate();
-
-        ps.close();
-
-        markClean();
     }
 }
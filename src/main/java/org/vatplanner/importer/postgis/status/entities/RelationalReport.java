@@ -1,8 +1,6 @@
 package org.vatplanner.importer.postgis.status.entities;
 
-import java.sql.Connection;
 import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.sql.Types;
@@ -22,7 +20,9 @@ public class RelationalReport extends Report implements DirtyMark {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(RelationalReport.class);
 
-    private final DirtyEntityTracker tracker;
+    private final DirtyEntityTracker.Entry<RelationalReport> dirtyEntry;
+
+    public static final String SQL_INSERT = "INSERT INTO reports (report_id, recordtime, connectedclients, fetchtime, fetchnode_id, fetchurlrequested_id, fetchurlretrieved_id, parsetime, parserrejectedlines) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
 
     private int databaseId = -1;
 
@@ -36,7 +36,7 @@ public class RelationalReport extends Report implements DirtyMark {
 
     public RelationalReport(DirtyEntityTracker tracker, Instant recordTime) {
         super(recordTime);
-        this.tracker = tracker;
+        this.dirtyEntry = tracker.register(RelationalReport.class, this);
         markDirty();
     }
 
@@ -172,7 +172,7 @@ public class RelationalReport extends Report implements DirtyMark {
 
     @Override
     public void markDirty() {
-        tracker.recordAsDirty(RelationalReport.class, this);
+        dirtyEntry.markDirty();
     }
 
     @Override
@@ -181,20 +181,34 @@ public class RelationalReport extends Report implements DirtyMark {
             throw new UnsupportedOperationException("Entities must not be marked clean without a database ID!");
         }
 
-        tracker.recordAsClean(RelationalReport.class, this);
+        dirtyEntry.markClean();
     }
 
     @Override
     public boolean isDirty() {
-        return tracker.isDirty(RelationalReport.class, this);
+        return dirtyEntry.isDirty();
     }
 
-    public void insert(Connection db, Caches caches) throws SQLException {
-        if (getDatabaseId() > 0) {
-            throw new UnsupportedOperationException("updating reports is not implemented");
+    /**
+     * Binds all values of this report to a {@link PreparedStatement} for
+     * {@link #SQL_INSERT}. A database ID must have been assigned before. The
+     * statement is neither executed nor added to a batch and the entity is not
+     * marked clean, this has to be handled by the caller.
+     *
+     * @param ps statement prepared for {@link #SQL_INSERT}
+     * @param caches caches to resolve deduplicated values
+     * @throws SQLException if binding any parameter or resolving deduplicated
+     *         values fails
+     */
+    public void bindInsert(PreparedStatement ps, Caches caches) throws SQLException {
+        if (getDatabaseId() <= 0) {
+            throw new IllegalStateException("reports require an ID to be assigned before insert");
         }
 
-        LOGGER.trace("INSERT report: record time {}, fetch time {}", getRecordTime(), getFetchTime());
+        LOGGER.trace(
+            "INSERT report: ID {}, record time {}, fetch time {}",
+            getDatabaseId(), getRecordTime(), getFetchTime() //
+        );
 
         // TODO: replace deduplication by DB functions
         int fetchNodeId = caches.getFetchNodes().getId(getFetchNode());
@@ -203,39 +217,22 @@ public class RelationalReport extends Report implements DirtyMark {
 
         // TODO: record number of skipped clients
         // TODO: record number of reconstructed flights?
-        PreparedStatement ps = db.prepareStatement(
-            "INSERT INTO reports (recordtime, connectedclients, fetchtime, fetchnode_id, fetchurlrequested_id, fetchurlretrieved_id, parsetime, parserrejectedlines) VALUES (?, ?, ?, ?, ?, ?, ?, ?) RETURNING report_id" //
-        );
-        ps.setTimestamp(1, Timestamp.from(getRecordTime()));
-        ps.setInt(2, getNumberOfConnectedClients());
-        ps.setTimestamp(3, Timestamp.from(getFetchTime()));
+        ps.setInt(1, getDatabaseId());
+        ps.setTimestamp(2, Timestamp.from(getRecordTime()));
+        ps.setInt(3, getNumberOfConnectedClients());
+        ps.setTimestamp(4, Timestamp.from(getFetchTime()));
         if (fetchNodeId > 0) {
-            ps.setInt(4, fetchNodeId);
+            ps.setInt(5, fetchNodeId);
         } else {
-            ps.setNull(4, Types.INTEGER);
+            ps.setNull(5, Types.INTEGER);
         }
-        ps.setInt(5, fetchUrlRequestedId);
+        ps.setInt(6, fetchUrlRequestedId);
         if (fetchUrlRetrievedId > 0) {
-            ps.setInt(6, fetchUrlRetrievedId);
+            ps.setInt(7, fetchUrlRetrievedId);
         } else {
-            ps.setNull(6, Types.INTEGER);
+            ps.setNull(7, Types.INTEGER);
         }
-        ps.setTimestamp(7, Timestamp.from(getParseTime()));
-        ps.setInt(8, getParserRejectedLines());
-
-        ResultSet rs = ps.executeQuery();
-
-        rs.next();
-        int reportId = rs.getInt("report_id");
-
-        rs.close();
-        ps.close();
-
-        if (reportId <= 0) {
-            throw new RuntimeException("unexpected report ID after insert: " + reportId);
-        }
-
-        setDatabaseId(reportId);
-        markClean();
+        ps.setTimestamp(8, Timestamp.from(getParseTime()));
+        ps.setInt(9, getParserRejectedLines());
     }
 }
@@ -1,6 +1,5 @@
 package org.vatplanner.importer.postgis.status.entities;
 
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Types;
@@ -13,21 +12,33 @@ import org.vatplanner.dataformats.vatsimpublic.entities.status.GeoCoordinates;
 import org.vatplanner.dataformats.vatsimpublic.entities.status.Report;
 import org.vatplanner.dataformats.vatsimpublic.entities.status.TrackPoint;
 import org.vatplanner.importer.postgis.status.DirtyEntityTracker;
+import org.vatplanner.importer.postgis.status.database.CopyStream;
 
 /**
  * {@link TrackPoint} extended for exchange with PostGIS.
+ *
+ * <p>
+ * Coordinates and QNH are immutable and mostly repeat between consecutive track
+ * points of the same flight, so instances with equal values are shared through
+ * the {@link RelationalFlight} instead of being held once per track point.
+ * Getters return instances holding exactly the values (and units) that have
+ * been set.
+ * </p>
  */
 public class RelationalTrackPoint extends TrackPoint implements DirtyMark {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(RelationalTrackPoint.class);
 
-    private final DirtyEntityTracker tracker;
+    private final DirtyEntityTracker.Entry<RelationalTrackPoint> dirtyEntry;
 
     public static final boolean POSTGIS_IS_ALTITUDE_UNIT_FEET = true; // TOOD: make configurable
 
+    public static final String SQL_INSERT = "INSERT INTO trackpoints (report_id, flight_id, geocoords, heading, groundspeed, transpondercode, qnhcinhg, qnhhpa) VALUES (?, ?, ST_MakePoint(?, ?, ?), ?, ?, ?, ?, ?)";
+    public static final String SQL_COPY = "COPY trackpoints (report_id, flight_id, geocoords, heading, groundspeed, transpondercode, qnhcinhg, qnhhpa) FROM STDIN";
+
     public RelationalTrackPoint(DirtyEntityTracker tracker, Report report) {
         super(report);
-        this.tracker = tracker;
+        this.dirtyEntry = tracker.register(RelationalTrackPoint.class, this);
         markDirty();
     }
 
@@ -40,13 +51,26 @@ public class RelationalTrackPoint extends TrackPoint implements DirtyMark {
         }
 
         markDirty();
-        return super.setFlight(flight);
+        super.setFlight(flight);
+
+        // values set before the flight was known can only be shared now
+        GeoCoordinates geoCoordinates = getGeoCoordinates();
+        if (geoCoordinates != null) {
+            super.setGeoCoordinates(shareGeoCoordinates(geoCoordinates));
+        }
+
+        BarometricPressure qnh = getQnh();
+        if (qnh != null) {
+            super.setQnh(shareQnh(qnh));
+        }
+
+        return this;
     }
 
     @Override
     public TrackPoint setGeoCoordinates(GeoCoordinates geoCoordinates) {
         markDirty();
-        return super.setGeoCoordinates(geoCoordinates);
+        return super.setGeoCoordinates(shareGeoCoordinates(geoCoordinates));
     }
 
     @Override
@@ -64,7 +88,7 @@ public class RelationalTrackPoint extends TrackPoint implements DirtyMark {
     @Override
     public TrackPoint setQnh(BarometricPressure qnh) {
         markDirty();
-        return super.setQnh(qnh);
+        return super.setQnh(shareQnh(qnh));
     }
 
     @Override
@@ -75,21 +99,29 @@ public class RelationalTrackPoint extends TrackPoint implements DirtyMark {
 
     @Override
     public void markDirty() {
-        tracker.recordAsDirty(RelationalTrackPoint.class, this);
+        dirtyEntry.markDirty();
     }
 
     @Override
     public boolean isDirty() {
-        return tracker.isDirty(RelationalTrackPoint.class, this);
+        return dirtyEntry.isDirty();
     }
 
     @Override
     public void markClean() {
-        tracker.recordAsClean(RelationalTrackPoint.class, this);
+        dirtyEntry.markClean();
     }
 
-    public void insert(Connection db) throws SQLException {
-        GeoCoordinates coords = getGeoCoordinates();
+    /**
+     * Binds all values of this track point to a {@link PreparedStatement} for
+     * {@link #SQL_INSERT}. The statement is neither executed nor added to a batch
+     * and the entity is not marked clean, this has to be handled by the caller.
+     *
+     * @param ps statement prepared for {@link #SQL_INSERT}
+     * @throws SQLException if binding any parameter fails
+     */
+    public void bindInsert(PreparedStatement ps) throws SQLException {
+        GeoCoordinates coords = requireGeoCoordinates();
         RelationalReport report = (RelationalReport) getReport();
         RelationalFlight flight = (RelationalFlight) getFlight();
 
@@ -107,14 +139,11 @@ public class RelationalTrackPoint extends TrackPoint implements DirtyMark {
             report.getRecordTime(), flight.getCallsign(), coords, heading, groundSpeed, transponderCode, qnh //
         );
 
-        PreparedStatement ps = db.prepareStatement(
-            "INSERT INTO trackpoints (report_id, flight_id, geocoords, heading, groundspeed, transpondercode, qnhcinhg, qnhhpa) VALUES (?, ?, ST_MakePoint(?, ?, ?), ?, ?, ?, ?, ?)" //
-        );
         ps.setInt(1, report.getDatabaseId());
         ps.setInt(2, flight.getDatabaseId());
         ps.setDouble(3, coords.getLongitude());
         ps.setDouble(4, coords.getLatitude());
-        ps.setDouble(5, POSTGIS_IS_ALTITUDE_UNIT_FEET ? coords.getAltitudeFeet() : coords.getAltitudeMeters());
+        ps.setDouble(5, getPostGisAltitude(coords));
 
         if (heading >= 0) {
             ps.setInt(6, heading);
@@ -143,12 +172,72 @@ public class RelationalTrackPoint extends TrackPoint implements DirtyMark {
             ps.setNull(9, Types.INTEGER);
             ps.setNull(10, Types.INTEGER);
         }
+    }
+
+    /**
+     * Encodes all values of this track point as a single row for
+     * {@link #SQL_COPY}. The entity is not marked clean, this has to be handled by
+     * the caller.
+     *
+     * @param stream stream of an operation started for {@link #SQL_COPY}
+     */
+    public void encodeCopyRow(CopyStream stream) {
+        GeoCoordinates coords = requireGeoCoordinates();
+        RelationalReport report = (RelationalReport) getReport();
+        RelationalFlight flight = (RelationalFlight) getFlight();
+
+        if (flight == null) {
+            throw new IllegalArgumentException("trackpoint is not associated to any flight");
+        }
 
-        ps.execute();
+        BarometricPressure qnh = getQnh();
 
-        ps.close();
+        stream.appendInt(report.getDatabaseId())
+            .appendInt(flight.getDatabaseId())
+            .appendPointZ(coords.getLongitude(), coords.getLatitude(), getPostGisAltitude(coords))
+            .appendNullIfNegative(getHeading())
+            .appendNullIfNegative(getGroundSpeed())
+            .appendNullIfNegative(getTransponderCode());
 
-        markClean();
+        if (qnh != null) {
+            stream.appendInt((int) Math.round(qnh.getInchesOfMercury() * 100.0))
+                .appendInt((int) Math.round(qnh.getHectopascals()));
+        } else {
+            stream.appendNull()
+                .appendNull();
+        }
+
+        stream.endRow();
+    }
+
+    private GeoCoordinates shareGeoCoordinates(GeoCoordinates geoCoordinates) {
+        RelationalFlight flight = (RelationalFlight) getFlight();
+        if ((flight == null) || (geoCoordinates == null)) {
+            return geoCoordinates;
+        }
+
+        return flight.shareTrackPointCoordinates(geoCoordinates);
     }
 
+    private BarometricPressure shareQnh(BarometricPressure qnh) {
+        RelationalFlight flight = (RelationalFlight) getFlight();
+        if ((flight == null) || (qnh == null)) {
+            return qnh;
+        }
+
+        return flight.shareTrackPointQnh(qnh);
+    }
+
+    private GeoCoordinates requireGeoCoordinates() {
+        GeoCoordinates coords = getGeoCoordinates();
+        if (coords == null) {
+            throw new IllegalArgumentException("trackpoint has no coordinates");
+        }
+
+        return coords;
+    }
+
+    private static int getPostGisAltitude(GeoCoordinates coords) {
+        return POSTGIS_IS_ALTITUDE_UNIT_FEET ? coords.getAltitudeFeet() : coords.getAltitudeMeters();
+    }
 }
@@ -0,0 +1,190 @@
+package org.vatplanner.importer.postgis.status.utils;
+
+import java.io.BufferedReader;
+import java.io.CharArrayReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A {@link BufferedReader} decoding ISO-8859-1 (Latin 1) text directly from a
+ * byte array.
+ *
+ * <p>
+ * Since every byte maps to exactly one character, no {@link java.io.InputStream}
+ * or charset decoder is needed and lines are created straight from the
+ * original bytes without intermediate character buffers. The byte array is
+ * released as soon as it has been read completely (unless a mark has been
+ * set), so it can be garbage collected while the caller is still processing
+ * the last lines.
+ * </p>
+ *
+ * <p>
+ * Instances are not thread-safe.
+ * </p>
+ */
+public class Latin1ByteArrayReader extends BufferedReader {
+
+    private static final byte[] RELEASED = new byte[0];
+
+    private byte[] data;
+    private int position = 0;
+    private int end;
+    private int markedPosition = -1;
+    private boolean isClosed = false;
+
+    /**
+     * Creates a new reader for the given ISO-8859-1 encoded bytes. The array must
+     * not be modified while it is being read.
+     *
+     * @param data ISO-8859-1 encoded text
+     */
+    public Latin1ByteArrayReader(byte[] data) {
+        // BufferedReader requires a delegate and a buffer, neither is used
+        super(new CharArrayReader(new char[0]), 1);
+
+        this.data = data;
+        this.end = data.length;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (isClosed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    private boolean isExhausted() {
+        if (position < end) {
+            return false;
+        }
+
+        if (markedPosition < 0) {
+            data = RELEASED;
+            position = 0;
+            end = 0;
+        }
+
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        ensureOpen();
+
+        if (isExhausted()) {
+            return -1;
+        }
+
+        return data[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        ensureOpen();
+
+        if ((off < 0) || (len < 0) || (len > cbuf.length - off)) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        if (len == 0) {
+            return 0;
+        }
+
+        if (isExhausted()) {
+            return -1;
+        }
+
+        int numRead = Integer.min(len, end - position);
+        for (int i = 0; i < numRead; i++) {
+            cbuf[off + i] = (char) (data[position + i] & 0xFF);
+        }
+        position += numRead;
+
+        return numRead;
+    }
+
+    @Override
+    public String readLine() throws IOException {
+        ensureOpen();
+
+        if (isExhausted()) {
+            return null;
+        }
+
+        int start = position;
+        while ((position < end) && (data[position] != '\n') && (data[position] != '\r')) {
+            position++;
+        }
+
+        String line = new String(data, start, position - start, StandardCharsets.ISO_8859_1);
+
+        if (position < end) {
+            boolean isCarriageReturn = (data[position] == '\r');
+            position++;
+
+            if (isCarriageReturn && (position < end) && (data[position] == '\n')) {
+                position++;
+            }
+        }
+
+        isExhausted();
+
+        return line;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (n < 0) {
+            throw new IllegalArgumentException("skip value is negative");
+        }
+
+        ensureOpen();
+
+        int numSkipped = (int) Long.min(n, end - position);
+        position += numSkipped;
+
+        return numSkipped;
+    }
+
+    @Override
+    public boolean ready() throws IOException {
+        ensureOpen();
+
+        return position < end;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public void mark(int readAheadLimit) throws IOException {
+        if (readAheadLimit < 0) {
+            throw new IllegalArgumentException("Read-ahead limit < 0");
+        }
+
+        ensureOpen();
+
+        markedPosition = position;
+    }
+
+    @Override
+    public void reset() throws IOException {
+        ensureOpen();
+
+        if (markedPosition < 0) {
+            throw new IOException("Stream not marked");
+        }
+
+        position = markedPosition;
+    }
+
+    @Override
+    public void close() {
+        isClosed = true;
+        data = RELEASED;
+        position = 0;
+        end = 0;
+        markedPosition = -1;
+    }
+}
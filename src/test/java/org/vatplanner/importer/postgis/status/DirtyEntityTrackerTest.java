@@ -0,0 +1,209 @@
+package org.vatplanner.importer.postgis.status;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.vatplanner.importer.postgis.status.DirtyEntityTracker.Entry;
+import org.vatplanner.importer.postgis.status.entities.DirtyMark;
+
+public class DirtyEntityTrackerTest {
+
+    private static class TestEntity implements DirtyMark {
+        private final Entry<?> dirtyEntry;
+
+        private TestEntity(DirtyEntityTracker tracker) {
+            dirtyEntry = register(tracker);
+        }
+
+        protected Entry<?> register(DirtyEntityTracker tracker) {
+            return tracker.register(TestEntity.class, this);
+        }
+
+        @Override
+        public void markDirty() {
+            dirtyEntry.markDirty();
+        }
+
+        @Override
+        public void markClean() {
+            dirtyEntry.markClean();
+        }
+
+        @Override
+        public boolean isDirty() {
+            return dirtyEntry.isDirty();
+        }
+    }
+
+    private static class OtherEntity extends TestEntity {
+        private OtherEntity(DirtyEntityTracker tracker) {
+            super(tracker);
+        }
+
+        @Override
+        protected Entry<?> register(DirtyEntityTracker tracker) {
+            return tracker.register(OtherEntity.class, this);
+        }
+    }
+
+    @Test
+    public void testDrain_dirtyEntities_returnsEntitiesInOrderOfListing() {
+        // Arrange
+        DirtyEntityTracker tracker = new DirtyEntityTracker();
+        TestEntity a = new TestEntity(tracker);
+        TestEntity b = new TestEntity(tracker);
+        TestEntity c = new TestEntity(tracker);
+        c.markDirty();
+        a.markDirty();
+        b.markDirty();
+
+        // Act
+        List<TestEntity> result = tracker.drain(TestEntity.class);
+
+        // Assert
+        assertThat(result, contains(c, a, b));
+    }
+
+    @Test
+    public void testDrain_repeatedlyMarkedDirty_returnsEntityOnce() {
+        // Arrange
+        DirtyEntityTracker tracker = new DirtyEntityTracker();
+        TestEntity a = new TestEntity(tracker);
+        a.markDirty();
+        a.markDirty();
+        a.markClean();
+        a.markDirty();
+
+        // Act
+        List<TestEntity> result = tracker.drain(TestEntity.class);
+
+        // Assert
+        assertThat(result, contains(a));
+    }
+
+    @Test
+    public void testDrain_markedCleanBeforeDrain_omitsEntity() {
+        // Arrange
+        DirtyEntityTracker tracker = new DirtyEntityTracker();
+        TestEntity a = new TestEntity(tracker);
+        TestEntity b = new TestEntity(tracker);
+        a.markDirty();
+        b.markDirty();
+        a.markClean();
+
+        // Act
+        List<TestEntity> result = tracker.drain(TestEntity.class);
+
+        // Assert
+        assertThat(result, contains(b));
+    }
+
+    @Test
+    public void testDrain_alreadyDrained_returnsEmptyList() {
+        // Arrange
+        DirtyEntityTracker tracker = new DirtyEntityTracker();
+        TestEntity a = new TestEntity(tracker);
+        a.markDirty();
+        tracker.drain(TestEntity.class);
+
+        // Act
+        List<TestEntity> result = tracker.drain(TestEntity.class);
+
+        // Assert
+        assertThat(result, is(empty()));
+    }
+
+    @Test
+    public void testDrain_markedCleanAndDirtyAfterDrain_relistsEntity() {
+        // Arrange
+        DirtyEntityTracker tracker = new DirtyEntityTracker();
+        TestEntity a = new TestEntity(tracker);
+        TestEntity b = new TestEntity(tracker);
+        a.markDirty();
+        b.markDirty();
+        for (TestEntity entity : tracker.drain(TestEntity.class)) {
+            entity.markClean();
+        }
+        b.markDirty();
+
+        // Act
+        List<TestEntity> result = tracker.drain(TestEntity.class);
+
+        // Assert
+        assertThat(result, contains(b));
+    }
+
+    @Test
+    public void testDrain_markedDirtyWhileDrainedBeforeClean_relistsEntityAfterMarkedDirtyAgain() {
+        // Arrange
+        DirtyEntityTracker tracker = new DirtyEntityTracker();
+        TestEntity a = new TestEntity(tracker);
+        a.markDirty();
+        List<TestEntity> drained = tracker.drain(TestEntity.class);
+        drained.get(0).markDirty();
+        drained.get(0).markClean();
+        a.markDirty();
+
+        // Act
+        List<TestEntity> result = tracker.drain(TestEntity.class);
+
+        // Assert
+        assertThat(result, contains(a));
+    }
+
+    @Test
+    public void testDrain_otherClass_returnsOnlyEntitiesOfRequestedClass() {
+        // Arrange
+        DirtyEntityTracker tracker = new DirtyEntityTracker();
+        TestEntity a = new TestEntity(tracker);
+        OtherEntity b = new OtherEntity(tracker);
+        a.markDirty();
+        b.markDirty();
+
+        // Act
+        List<TestEntity> result = tracker.drain(TestEntity.class);
+
+        // Assert
+        assertThat(result, contains(a));
+    }
+
+    @Test
+    public void testCountDirtyEntities_drainedButNotClean_countsEntities() {
+        // Arrange
+        DirtyEntityTracker tracker = new DirtyEntityTracker();
+        TestEntity a = new TestEntity(tracker);
+        TestEntity b = new TestEntity(tracker);
+        TestEntity c = new TestEntity(tracker);
+        a.markDirty();
+        b.markDirty();
+        c.markDirty();
+        tracker.drain(TestEntity.class).get(1).markClean();
+
+        // Act
+        int result = tracker.countDirtyEntities(TestEntity.class);
+
+        // Assert
+        assertThat(result, is(2));
+    }
+
+    @Test
+    public void testCountDirtyEntities_multipleClasses_countsAllClasses() {
+        // Arrange
+        DirtyEntityTracker tracker = new DirtyEntityTracker();
+        new TestEntity(tracker).markDirty();
+        new OtherEntity(tracker).markDirty();
+        new OtherEntity(tracker).markDirty();
+        new OtherEntity(tracker);
+
+        // Act
+        int result = tracker.countDirtyEntities();
+
+        // Assert
+        assertThat(result, is(3));
+    }
+}
@@ -0,0 +1,317 @@
+package org.vatplanner.importer.postgis.status.database;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.vatplanner.importer.postgis.status.database.PreselectionCache.Preselection;
+
+import com.tngtech.java.junit.dataprovider.DataProvider;
+import com.tngtech.java.junit.dataprovider.DataProviderRunner;
+import com.tngtech.java.junit.dataprovider.UseDataProvider;
+
+@RunWith(DataProviderRunner.class)
+public class PreselectionCacheTest {
+
+    private static final Duration RETENTION = Duration.ofSeconds(7200);
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @DataProvider
+    public static Object[][] dataProviderOverlaps() {
+        return new Object[][] {
+            // equal starts
+            { 1000, 2000, 1000, 3000, true }, //
+            { 1000, 1000, 1000, 3000, true }, //
+            { 1000, 3000, 1000, 1000, true }, //
+
+            // single instants
+            { 1000, 1000, 1000, 1000, true }, //
+            { 1000, 1000, 1001, 1001, false }, //
+            { 1500, 1500, 1000, 2000, true }, //
+            { 1000, 2000, 1500, 1500, true }, //
+            { 2000, 2000, 1000, 2000, false }, //
+            { 1000, 2000, 2000, 2000, false }, //
+            { 999, 999, 1000, 2000, false }, //
+
+            // adjacent (half-open)
+            { 1000, 2000, 2000, 3000, false }, //
+            { 2000, 3000, 1000, 2000, false }, //
+
+            // partial overlap
+            { 1000, 2001, 2000, 3000, true }, //
+            { 2000, 3000, 1000, 2001, true }, //
+
+            // contained
+            { 1000, 4000, 2000, 3000, true }, //
+            { 2000, 3000, 1000, 4000, true }, //
+
+            // disjoint
+            { 1000, 2000, 3000, 4000, false }, //
+            { 3000, 4000, 1000, 2000, false }, //
+        };
+    }
+
+    @Test
+    @UseDataProvider("dataProviderOverlaps")
+    public void testOverlaps_validInput_returnsExpectedResult(int start1, int end1, int start2, int end2, boolean expectedResult) {
+        // Act
+        boolean result = PreselectionCache.overlaps(
+            Instant.ofEpochSecond(start1), Instant.ofEpochSecond(end1),
+            Instant.ofEpochSecond(start2), Instant.ofEpochSecond(end2) //
+        );
+
+        // Assert
+        assertThat(result, is(expectedResult));
+    }
+
+    @Test
+    public void testCovers_neverReset_returnsFalse() {
+        // Arrange
+        PreselectionCache cache = new PreselectionCache();
+
+        // Act
+        boolean result = cache.covers(Instant.ofEpochSecond(100000));
+
+        // Assert
+        assertThat(result, is(false));
+    }
+
+    @DataProvider
+    public static Object[][] dataProviderCoversAfterReset() {
+        return new Object[][] {
+            { 99999, false }, //
+            { 100000, true }, //
+            { 100001, true }, //
+        };
+    }
+
+    @Test
+    @UseDataProvider("dataProviderCoversAfterReset")
+    public void testCovers_afterReset_returnsTrueFromResetTime(int earliestFetchTime, boolean expectedResult) {
+        // Arrange
+        PreselectionCache cache = new PreselectionCache();
+        cache.reset(Instant.ofEpochSecond(100000));
+
+        // Act
+        boolean result = cache.covers(Instant.ofEpochSecond(earliestFetchTime));
+
+        // Assert
+        assertThat(result, is(expectedResult));
+    }
+
+    @DataProvider
+    public static Object[][] dataProviderCoversAfterWindowMoved() {
+        return new Object[][] {
+            { 100000, false }, //
+            { 100599, false }, //
+            { 100600, true }, //
+            { 101000, true }, //
+        };
+    }
+
+    @Test
+    @UseDataProvider("dataProviderCoversAfterWindowMoved")
+    public void testCovers_afterPreselect_returnsTrueFromLatestWindowStart(int earliestFetchTime, boolean expectedResult) {
+        // Arrange
+        PreselectionCache cache = new PreselectionCache();
+        cache.reset(Instant.ofEpochSecond(100000));
+        cache.preselect(Instant.ofEpochSecond(100600), RETENTION);
+
+        // Act
+        boolean result = cache.covers(Instant.ofEpochSecond(earliestFetchTime));
+
+        // Assert
+        assertThat(result, is(expectedResult));
+    }
+
+    @Test
+    @UseDataProvider("dataProviderCoversAfterWindowMoved")
+    public void testCovers_afterPrune_returnsTrueFromLatestWindowStart(int earliestFetchTime, boolean expectedResult) {
+        // Arrange
+        PreselectionCache cache = new PreselectionCache();
+        cache.reset(Instant.ofEpochSecond(100000));
+        cache.prune(Instant.ofEpochSecond(100600), RETENTION);
+
+        // Act
+        boolean result = cache.covers(Instant.ofEpochSecond(earliestFetchTime));
+
+        // Assert
+        assertThat(result, is(expectedResult));
+    }
+
+    @Test
+    public void testPrune_notCovered_keepsCoverage() {
+        // Arrange
+        PreselectionCache cache = new PreselectionCache();
+        cache.reset(Instant.ofEpochSecond(100000));
+        cache.recordReport(1, Instant.ofEpochSecond(100000), Instant.ofEpochSecond(99990));
+
+        // Act
+        cache.prune(Instant.ofEpochSecond(99999), RETENTION);
+
+        // Assert
+        assertThat(cache.covers(Instant.ofEpochSecond(100000)), is(true));
+        assertThat(cache.preselect(Instant.ofEpochSecond(100000), RETENTION).completeReportIds, contains(1));
+    }
+
+    @Test
+    public void testPreselect_notCovered_throwsIllegalArgumentException() {
+        // Arrange
+        PreselectionCache cache = new PreselectionCache();
+        cache.reset(Instant.ofEpochSecond(100000));
+
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("cache covers loads since");
+
+        // Act
+        cache.preselect(Instant.ofEpochSecond(99999), RETENTION);
+    }
+
+    @Test
+    public void testPreselect_reports_returnsReportsFetchedAtOrAfterStart() {
+        // Arrange
+        PreselectionCache cache = new PreselectionCache();
+        cache.reset(Instant.ofEpochSecond(100000));
+        cache.recordReport(1, Instant.ofEpochSecond(100000), Instant.ofEpochSecond(99990));
+        cache.recordReport(2, Instant.ofEpochSecond(100060), Instant.ofEpochSecond(100050));
+        cache.recordReport(3, Instant.ofEpochSecond(100120), Instant.ofEpochSecond(100110));
+
+        // Act
+        Preselection result = cache.preselect(Instant.ofEpochSecond(100060), RETENTION);
+
+        // Assert
+        assertThat(result.completeReportIds, containsInAnyOrder(2, 3));
+    }
+
+    @Test
+    public void testPreselect_recordedBeforeReset_returnsNothing() {
+        // Arrange
+        PreselectionCache cache = new PreselectionCache();
+        cache.recordReport(1, Instant.ofEpochSecond(100000), Instant.ofEpochSecond(99990));
+        cache.recordConnection(10, Instant.ofEpochSecond(99000), Instant.ofEpochSecond(99990));
+        cache.reset(Instant.ofEpochSecond(100000));
+
+        // Act
+        Preselection result = cache.preselect(Instant.ofEpochSecond(100000), RETENTION);
+
+        // Assert
+        assertThat(result.completeReportIds, is(empty()));
+        assertThat(result.connectionIds, is(empty()));
+    }
+
+    @Test
+    public void testPreselect_noReports_returnsNoConnectionsOrFlights() {
+        // Arrange
+        PreselectionCache cache = new PreselectionCache();
+        cache.reset(Instant.ofEpochSecond(100000));
+        cache.recordConnection(10, Instant.ofEpochSecond(100000), Instant.ofEpochSecond(100100));
+        cache.recordFlightPlan(20, Instant.ofEpochSecond(100000));
+
+        // Act
+        Preselection result = cache.preselect(Instant.ofEpochSecond(100000), RETENTION);
+
+        // Assert
+        assertThat(result.connectionIds, is(empty()));
+        assertThat(result.flightIds, is(empty()));
+    }
+
+    @Test
+    public void testPreselect_connections_returnsConnectionsOverlappingRecordTimeWindow() {
+        // Arrange
+        PreselectionCache cache = new PreselectionCache();
+        cache.reset(Instant.ofEpochSecond(100000));
+        cache.recordReport(1, Instant.ofEpochSecond(100010), Instant.ofEpochSecond(100000));
+        cache.recordReport(2, Instant.ofEpochSecond(100070), Instant.ofEpochSecond(100060));
+
+        // window is [100000, 100061)
+        cache.recordConnection(10, Instant.ofEpochSecond(99000), Instant.ofEpochSecond(100000)); // ends at window start
+        cache.recordConnection(11, Instant.ofEpochSecond(99000), Instant.ofEpochSecond(100001));
+        cache.recordConnection(12, Instant.ofEpochSecond(100000), Instant.ofEpochSecond(100000)); // single instant
+        cache.recordConnection(13, Instant.ofEpochSecond(100060), Instant.ofEpochSecond(100500));
+        cache.recordConnection(14, Instant.ofEpochSecond(100061), Instant.ofEpochSecond(100500)); // starts at window end
+        cache.recordConnection(15, Instant.ofEpochSecond(98000), Instant.ofEpochSecond(99000));
+
+        // Act
+        Preselection result = cache.preselect(Instant.ofEpochSecond(100000), RETENTION);
+
+        // Assert
+        assertThat(result.connectionIds, containsInAnyOrder(11, 12, 13));
+    }
+
+    @Test
+    public void testPreselect_flights_returnsFlightsWithFlightPlanRetainedDuringWindow() {
+        // Arrange
+        PreselectionCache cache = new PreselectionCache();
+        cache.reset(Instant.ofEpochSecond(100000));
+        cache.recordReport(1, Instant.ofEpochSecond(100010), Instant.ofEpochSecond(100000));
+
+        // window is [100000, 100001)
+        cache.recordFlightPlan(20, Instant.ofEpochSecond(100000 - 7200)); // retained until window start
+        cache.recordFlightPlan(21, Instant.ofEpochSecond(100001 - 7200));
+        cache.recordFlightPlan(22, Instant.ofEpochSecond(100000));
+        cache.recordFlightPlan(23, Instant.ofEpochSecond(100001)); // first seen after window
+        cache.recordFlightPlan(24, Instant.ofEpochSecond(90000));
+        cache.recordFlightPlan(24, Instant.ofEpochSecond(99000)); // second flight plan still retained
+
+        // Act
+        Preselection result = cache.preselect(Instant.ofEpochSecond(100000), RETENTION);
+
+        // Assert
+        assertThat(result.flightIds, containsInAnyOrder(21, 22, 24));
+    }
+
+    @Test
+    public void testPreselect_afterWindowMoved_omitsPrunedEntities() {
+        // Arrange
+        PreselectionCache cache = new PreselectionCache();
+        cache.reset(Instant.ofEpochSecond(100000));
+        cache.recordReport(1, Instant.ofEpochSecond(100010), Instant.ofEpochSecond(100000));
+        cache.recordReport(2, Instant.ofEpochSecond(110010), Instant.ofEpochSecond(110000));
+        cache.recordConnection(10, Instant.ofEpochSecond(99000), Instant.ofEpochSecond(100000));
+        cache.recordConnection(11, Instant.ofEpochSecond(109000), Instant.ofEpochSecond(110001));
+        cache.recordFlightPlan(20, Instant.ofEpochSecond(100000));
+        cache.recordFlightPlan(21, Instant.ofEpochSecond(110000));
+        cache.preselect(Instant.ofEpochSecond(100000), RETENTION);
+
+        // Act
+        Preselection result = cache.preselect(Instant.ofEpochSecond(110000), RETENTION);
+
+        // Assert
+        assertThat(result.completeReportIds, contains(2));
+        assertThat(result.connectionIds, contains(11));
+        assertThat(result.flightIds, contains(21));
+    }
+
+    @Test
+    public void testPreselect_afterPrune_omitsPrunedEntities() {
+        // Arrange
+        PreselectionCache cache = new PreselectionCache();
+        cache.reset(Instant.ofEpochSecond(100000));
+        cache.recordReport(1, Instant.ofEpochSecond(100010), Instant.ofEpochSecond(100000));
+        cache.recordReport(2, Instant.ofEpochSecond(110010), Instant.ofEpochSecond(110000));
+        cache.recordConnection(10, Instant.ofEpochSecond(99000), Instant.ofEpochSecond(100000));
+        cache.recordConnection(11, Instant.ofEpochSecond(109000), Instant.ofEpochSecond(110001));
+        cache.recordFlightPlan(20, Instant.ofEpochSecond(100000));
+        cache.recordFlightPlan(21, Instant.ofEpochSecond(110000));
+        cache.prune(Instant.ofEpochSecond(110000), RETENTION);
+
+        // Act
+        Preselection result = cache.preselect(Instant.ofEpochSecond(110000), RETENTION);
+
+        // Assert
+        assertThat(result.completeReportIds, contains(2));
+        assertThat(result.connectionIds, contains(11));
+        assertThat(result.flightIds, contains(21));
+    }
+}
@@ -0,0 +1,179 @@
+package org.vatplanner.importer.postgis.status.database;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class StrictEnumCacheTest {
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    private static enum TestEnum {
+        FIRST,
+        SECOND,
+        THIRD;
+    }
+
+    @Test
+    public void testGetId_known_returnsDatabaseId() throws Exception {
+        // Arrange
+        StrictEnumCache<TestEnum> cache = createCache(new Object[][] { { 5, "second" }, { 2, "first" } });
+
+        // Act
+        int result = cache.getId(TestEnum.SECOND);
+
+        // Assert
+        assertThat(result, is(5));
+    }
+
+    @Test
+    public void testGetEnum_known_returnsEnum() throws Exception {
+        // Arrange
+        StrictEnumCache<TestEnum> cache = createCache(new Object[][] { { 5, "second" }, { 2, "first" } });
+
+        // Act
+        TestEnum result = cache.getEnum(2);
+
+        // Assert
+        assertThat(result, is(TestEnum.FIRST));
+    }
+
+    @Test
+    public void testGetId_unknownToDatabase_throwsIllegalArgumentException() throws Exception {
+        // Arrange
+        StrictEnumCache<TestEnum> cache = createCache(new Object[][] { { 5, "second" }, { 2, "first" } });
+
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Java enum THIRD does not exist in database");
+
+        // Act
+        cache.getId(TestEnum.THIRD);
+
+        // Assert (exception)
+    }
+
+    @Test
+    public void testGetEnum_idWithinRangeButUnknown_throwsIllegalArgumentException() throws Exception {
+        // Arrange
+        StrictEnumCache<TestEnum> cache = createCache(new Object[][] { { 5, "second" }, { 2, "first" } });
+
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("ID 3 is unknown");
+
+        // Act
+        cache.getEnum(3);
+
+        // Assert (exception)
+    }
+
+    @Test
+    public void testGetEnum_idOutOfRange_throwsIllegalArgumentException() throws Exception {
+        // Arrange
+        StrictEnumCache<TestEnum> cache = createCache(new Object[][] { { 5, "second" }, { 2, "first" } });
+
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("ID 6 is unknown");
+
+        // Act
+        cache.getEnum(6);
+
+        // Assert (exception)
+    }
+
+    @Test
+    public void testConstructor_ambiguousId_throwsRuntimeException() throws Exception {
+        // Arrange
+        thrown.expect(RuntimeException.class);
+        thrown.expectMessage("database name \"second\" has ambiguous ID");
+
+        // Act
+        createCache(new Object[][] { { 1, "first" }, { 1, "second" } });
+
+        // Assert (exception)
+    }
+
+    @Test
+    public void testConstructor_idAboveMaximum_throwsRuntimeException() throws Exception {
+        // Arrange
+        int id = StrictEnumCache.MAX_ID + 1;
+
+        thrown.expect(RuntimeException.class);
+        thrown.expectMessage("database name \"first\" has ID " + id + " exceeding maximum of " + StrictEnumCache.MAX_ID);
+
+        // Act
+        createCache(new Object[][] { { id, "first" } });
+
+        // Assert (exception)
+    }
+
+    @Test
+    public void testGetEnum_maximumId_returnsEnum() throws Exception {
+        // Arrange
+        StrictEnumCache<TestEnum> cache = createCache(new Object[][] { { StrictEnumCache.MAX_ID, "third" } });
+
+        // Act
+        TestEnum result = cache.getEnum(StrictEnumCache.MAX_ID);
+
+        // Assert
+        assertThat(result, is(TestEnum.THIRD));
+    }
+
+    @Test
+    public void testRequireAllEnumsInDatabase_missingEnums_throwsIllegalStateException() throws Exception {
+        // Arrange
+        StrictEnumCache<TestEnum> cache = createCache(new Object[][] { { 5, "second" } });
+
+        thrown.expect(IllegalStateException.class);
+        thrown.expectMessage("Java enums [FIRST, THIRD] do not exist in database");
+
+        // Act
+        cache.requireAllEnumsInDatabase();
+
+        // Assert (exception)
+    }
+
+    @Test
+    public void testRequireAllEnumsInDatabase_allEnumsExist_doesNotThrow() throws Exception {
+        // Arrange
+        StrictEnumCache<TestEnum> cache = createCache(new Object[][] { { 3, "third" }, { 5, "second" }, { 2, "first" } });
+
+        // Act
+        cache.requireAllEnumsInDatabase();
+
+        // Assert (nothing to do)
+    }
+
+    private StrictEnumCache<TestEnum> createCache(Object[][] rows) throws Exception {
+        ResultSet mockResultSet = mock(ResultSet.class);
+        int[] rowIndex = { -1 };
+        doAnswer(invocation -> ++rowIndex[0] < rows.length).when(mockResultSet).next();
+        doAnswer(invocation -> rows[rowIndex[0]][0]).when(mockResultSet).getInt(anyInt());
+        doAnswer(invocation -> rows[rowIndex[0]][1]).when(mockResultSet).getString(anyInt());
+
+        Statement mockStatement = mock(Statement.class);
+        doReturn(mockResultSet).when(mockStatement).executeQuery(anyString());
+
+        Connection mockConnection = mock(Connection.class);
+        doReturn(mockStatement).when(mockConnection).createStatement();
+
+        return new StrictEnumCache<>(
+            mockConnection,
+            "SELECT id, name FROM test",
+            TestEnum.class,
+            name -> TestEnum.valueOf(name.toUpperCase()) //
+        );
+    }
+}
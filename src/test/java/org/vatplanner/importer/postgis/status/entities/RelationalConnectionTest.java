@@ -0,0 +1,84 @@
+package org.vatplanner.importer.postgis.status.entities;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.time.Instant;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.vatplanner.dataformats.vatsimpublic.entities.status.Member;
+import org.vatplanner.importer.postgis.status.DirtyEntityTracker;
+import org.vatplanner.importer.postgis.status.database.Caches;
+import org.vatplanner.importer.postgis.status.database.PendingWrites;
+import org.vatplanner.importer.postgis.status.database.PendingWrites.ExpectedRows;
+
+public class RelationalConnectionTest {
+
+    private static final Instant LOGON_TIME = Instant.parse("2019-06-01T12:00:00Z");
+
+    private DirtyEntityTracker tracker;
+    private PendingWrites mockWrites;
+    private Caches mockCaches;
+
+    @Before
+    public void setUp() {
+        tracker = new DirtyEntityTracker();
+
+        mockWrites = mock(PendingWrites.class);
+        mockCaches = mock(Caches.class);
+        doReturn(mockWrites).when(mockCaches).getWrites();
+    }
+
+    @Test
+    public void testUpdate_unchanged_skipsUpdateAndMarksClean() throws Exception {
+        // Arrange
+        RelationalConnection connection = createPersistedConnection();
+        connection.markDirty();
+
+        // Act
+        connection.update(mockCaches);
+
+        // Assert
+        verify(mockWrites, never()).addBatch(anyString(), any(), any());
+        assertThat(connection.isDirty(), is(false));
+    }
+
+    @Test
+    public void testUpdate_seenInLaterReport_updatesOnlyLastReport() throws Exception {
+        // Arrange
+        RelationalConnection connection = createPersistedConnection();
+        connection.seenInReport(createReport(LOGON_TIME.plusSeconds(120), 2));
+
+        // Act
+        connection.update(mockCaches);
+
+        // Assert
+        verify(mockWrites).addBatch(
+            eq("UPDATE connections SET lastreport_id=? WHERE connection_id=?"),
+            eq(ExpectedRows.EXACTLY_ONE),
+            any() //
+        );
+        assertThat(connection.isDirty(), is(false));
+    }
+
+    private RelationalConnection createPersistedConnection() {
+        RelationalConnection connection = new RelationalConnection(tracker, new Member(123456), LOGON_TIME);
+        connection.setDatabaseId(42);
+        connection.seenInReport(createReport(LOGON_TIME.plusSeconds(60), 1));
+        connection.markClean();
+
+        return connection;
+    }
+
+    private RelationalReport createReport(Instant recordTime, int databaseId) {
+        return new RelationalReport(tracker, recordTime).setDatabaseId(databaseId);
+    }
+}
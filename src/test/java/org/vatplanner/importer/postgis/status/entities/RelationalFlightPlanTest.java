@@ -3,7 +3,6 @@ package org.vatplanner.importer.postgis.status.entities;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
-import static org.mockito.Mockito.mock;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -56,8 +55,8 @@ public class RelationalFlightPlanTest {
     @UseDataProvider("dataProviderNormalizeAirportCodes")
     public void testNormalizeAirportCode_definedInput_returnsExpectedResult(String input, String expectedResult) {
         // Arrange
-        DirtyEntityTracker mockTracker = mock(DirtyEntityTracker.class);
-        RelationalFlightPlan flightPlan = new RelationalFlightPlan(mockTracker, null, 0);
+        DirtyEntityTracker tracker = new DirtyEntityTracker();
+        RelationalFlightPlan flightPlan = new RelationalFlightPlan(tracker, null, 0);
 
         // Act
         String result = flightPlan.normalizeAirportCode(input);
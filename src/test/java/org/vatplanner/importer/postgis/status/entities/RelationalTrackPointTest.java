@@ -0,0 +1,252 @@
+package org.vatplanner.importer.postgis.status.entities;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.sql.PreparedStatement;
+import java.time.Instant;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.vatplanner.dataformats.vatsimpublic.entities.status.BarometricPressure;
+import org.vatplanner.dataformats.vatsimpublic.entities.status.GeoCoordinates;
+import org.vatplanner.dataformats.vatsimpublic.entities.status.Member;
+import org.vatplanner.importer.postgis.status.DirtyEntityTracker;
+
+import com.tngtech.java.junit.dataprovider.DataProvider;
+import com.tngtech.java.junit.dataprovider.DataProviderRunner;
+import com.tngtech.java.junit.dataprovider.UseDataProvider;
+
+@RunWith(DataProviderRunner.class)
+public class RelationalTrackPointTest {
+
+    private DirtyEntityTracker tracker;
+    private RelationalTrackPoint trackPoint;
+
+    @Before
+    public void setUp() {
+        tracker = new DirtyEntityTracker();
+        RelationalReport report = new RelationalReport(tracker, Instant.parse("2019-06-01T12:00:00Z"));
+        trackPoint = new RelationalTrackPoint(tracker, report);
+    }
+
+    @DataProvider
+    public static Object[][] dataProviderGeoCoordinates() {
+        return new Object[][] {
+            { 53.6304, 9.9883, 53, true }, //
+            { 53.6304, 9.9883, 16, false }, //
+            { -33.9461, 151.1772, 37001, true }, //
+            { -33.9461, 151.1772, 11278, false }, //
+        };
+    }
+
+    @Test
+    @UseDataProvider("dataProviderGeoCoordinates")
+    public void testGetGeoCoordinates_set_returnsOriginalValueAndUnit(double latitude, double longitude, int altitude, boolean isAltitudeUnitFeet) {
+        // Arrange
+        GeoCoordinates original = new GeoCoordinates(latitude, longitude, altitude, isAltitudeUnitFeet);
+        trackPoint.setGeoCoordinates(original);
+
+        // Act
+        GeoCoordinates result = trackPoint.getGeoCoordinates();
+
+        // Assert
+        assertThat(result, is(sameInstance(original)));
+        assertThat(isAltitudeUnitFeet ? result.getAltitudeFeet() : result.getAltitudeMeters(), is(altitude));
+    }
+
+    @Test
+    public void testGetGeoCoordinates_setNull_returnsNull() {
+        // Arrange
+        trackPoint.setGeoCoordinates(new GeoCoordinates(53.6304, 9.9883, 53, true));
+        trackPoint.setGeoCoordinates(null);
+
+        // Act
+        GeoCoordinates result = trackPoint.getGeoCoordinates();
+
+        // Assert
+        assertThat(result, is(nullValue()));
+    }
+
+    @Test
+    public void testGetQnh_setInInchesOfMercury_returnsOriginalValue() {
+        // Arrange
+        BarometricPressure original = BarometricPressure.fromInchesOfMercury(29.92);
+        trackPoint.setQnh(original);
+
+        // Act
+        BarometricPressure result = trackPoint.getQnh();
+
+        // Assert
+        assertThat(result, is(sameInstance(original)));
+        assertThat(result.getInchesOfMercury(), is(29.92));
+    }
+
+    @Test
+    public void testGetQnh_setInHectopascals_returnsOriginalValue() {
+        // Arrange
+        BarometricPressure original = BarometricPressure.fromHectopascals(1013.0);
+        trackPoint.setQnh(original);
+
+        // Act
+        BarometricPressure result = trackPoint.getQnh();
+
+        // Assert
+        assertThat(result, is(sameInstance(original)));
+        assertThat(result.getHectopascals(), is(1013.0));
+    }
+
+    @Test
+    public void testGetQnh_setNull_returnsNull() {
+        // Arrange
+        trackPoint.setQnh(BarometricPressure.fromHectopascals(1013.0));
+        trackPoint.setQnh(null);
+
+        // Act
+        BarometricPressure result = trackPoint.getQnh();
+
+        // Assert
+        assertThat(result, is(nullValue()));
+    }
+
+    @Test
+    public void testGetGeoCoordinates_equalToPreviousTrackPointOfFlight_returnsSharedInstance() {
+        // Arrange
+        RelationalFlight flight = new RelationalFlight(tracker, new Member(123456), "ABC123");
+        RelationalTrackPoint previous = createTrackPoint(flight, "2019-06-01T12:00:00Z");
+        GeoCoordinates shared = new GeoCoordinates(53.6304, 9.9883, 53, true);
+        previous.setGeoCoordinates(shared);
+
+        trackPoint.setFlight(flight);
+        trackPoint.setGeoCoordinates(new GeoCoordinates(53.6304, 9.9883, 53, true));
+
+        // Act
+        GeoCoordinates result = trackPoint.getGeoCoordinates();
+
+        // Assert
+        assertThat(result, is(sameInstance(shared)));
+    }
+
+    @Test
+    public void testGetGeoCoordinates_differentFromPreviousTrackPointOfFlight_returnsOriginalInstance() {
+        // Arrange
+        RelationalFlight flight = new RelationalFlight(tracker, new Member(123456), "ABC123");
+        RelationalTrackPoint previous = createTrackPoint(flight, "2019-06-01T12:00:00Z");
+        previous.setGeoCoordinates(new GeoCoordinates(53.6304, 9.9883, 53, true));
+
+        trackPoint.setFlight(flight);
+        GeoCoordinates original = new GeoCoordinates(53.6304, 9.9883, 1000, true);
+        trackPoint.setGeoCoordinates(original);
+
+        // Act
+        GeoCoordinates result = trackPoint.getGeoCoordinates();
+
+        // Assert
+        assertThat(result, is(sameInstance(original)));
+    }
+
+    @Test
+    public void testGetGeoCoordinates_setBeforeFlight_returnsInstanceSharedWithPreviousTrackPoint() {
+        // Arrange
+        RelationalFlight flight = new RelationalFlight(tracker, new Member(123456), "ABC123");
+        RelationalTrackPoint previous = createTrackPoint(flight, "2019-06-01T12:00:00Z");
+        GeoCoordinates shared = new GeoCoordinates(53.6304, 9.9883, 53, true);
+        previous.setGeoCoordinates(shared);
+
+        trackPoint.setGeoCoordinates(new GeoCoordinates(53.6304, 9.9883, 53, true));
+        trackPoint.setFlight(flight);
+
+        // Act
+        GeoCoordinates result = trackPoint.getGeoCoordinates();
+
+        // Assert
+        assertThat(result, is(sameInstance(shared)));
+    }
+
+    @Test
+    public void testGetQnh_equalToPreviousTrackPointOfFlight_returnsSharedInstance() {
+        // Arrange
+        RelationalFlight flight = new RelationalFlight(tracker, new Member(123456), "ABC123");
+        RelationalTrackPoint previous = createTrackPoint(flight, "2019-06-01T12:00:00Z");
+        BarometricPressure shared = BarometricPressure.fromInchesOfMercury(29.92);
+        previous.setQnh(shared);
+
+        trackPoint.setFlight(flight);
+        trackPoint.setQnh(BarometricPressure.fromInchesOfMercury(29.92));
+
+        // Act
+        BarometricPressure result = trackPoint.getQnh();
+
+        // Assert
+        assertThat(result, is(sameInstance(shared)));
+    }
+
+    @Test
+    public void testGetQnh_differentFromPreviousTrackPointOfFlight_returnsOriginalInstance() {
+        // Arrange
+        RelationalFlight flight = new RelationalFlight(tracker, new Member(123456), "ABC123");
+        RelationalTrackPoint previous = createTrackPoint(flight, "2019-06-01T12:00:00Z");
+        previous.setQnh(BarometricPressure.fromInchesOfMercury(29.92));
+
+        trackPoint.setFlight(flight);
+        BarometricPressure original = BarometricPressure.fromHectopascals(1013.0);
+        trackPoint.setQnh(original);
+
+        // Act
+        BarometricPressure result = trackPoint.getQnh();
+
+        // Assert
+        assertThat(result, is(sameInstance(original)));
+    }
+
+    @Test
+    public void testGetQnh_otherFlight_returnsOriginalInstance() {
+        // Arrange
+        RelationalFlight otherFlight = new RelationalFlight(tracker, new Member(654321), "XYZ789");
+        RelationalTrackPoint other = createTrackPoint(otherFlight, "2019-06-01T12:00:00Z");
+        other.setQnh(BarometricPressure.fromInchesOfMercury(29.92));
+
+        trackPoint.setFlight(new RelationalFlight(tracker, new Member(123456), "ABC123"));
+        BarometricPressure original = BarometricPressure.fromInchesOfMercury(29.92);
+        trackPoint.setQnh(original);
+
+        // Act
+        BarometricPressure result = trackPoint.getQnh();
+
+        // Assert
+        assertThat(result, is(sameInstance(original)));
+    }
+
+    @Test
+    public void testBindInsert_altitudeInMeters_bindsAltitudeInFeet() throws Exception {
+        // Arrange
+        ((RelationalReport) trackPoint.getReport()).setDatabaseId(1);
+        trackPoint.setFlight(new RelationalFlight(tracker, new Member(123456), "ABC123").setDatabaseId(2));
+        GeoCoordinates coords = new GeoCoordinates(53.6304, 9.9883, 1000, false);
+        trackPoint.setGeoCoordinates(coords);
+
+        PreparedStatement mockStatement = mock(PreparedStatement.class);
+
+        // Act
+        trackPoint.bindInsert(mockStatement);
+
+        // Assert
+        verify(mockStatement).setDouble(3, 9.9883);
+        verify(mockStatement).setDouble(4, 53.6304);
+        verify(mockStatement).setDouble(5, coords.getAltitudeFeet());
+    }
+
+    private RelationalTrackPoint createTrackPoint(RelationalFlight flight, String recordTime) {
+        RelationalTrackPoint trackPoint = new RelationalTrackPoint(
+            tracker,
+            new RelationalReport(tracker, Instant.parse(recordTime)) //
+        );
+        trackPoint.setFlight(flight);
+        return trackPoint;
+    }
+}
@@ -0,0 +1,156 @@
+package org.vatplanner.importer.postgis.status.utils;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.emptyIterable;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+
+import com.tngtech.java.junit.dataprovider.DataProvider;
+import com.tngtech.java.junit.dataprovider.DataProviderRunner;
+import com.tngtech.java.junit.dataprovider.UseDataProvider;
+
+@RunWith(DataProviderRunner.class)
+public class Latin1ByteArrayReaderTest {
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @DataProvider
+    public static Object[][] dataProviderLineTerminators() {
+        return new Object[][] {
+            { "\n" }, //
+            { "\r" }, //
+            { "\r\n" }, //
+        };
+    }
+
+    @Test
+    @UseDataProvider("dataProviderLineTerminators")
+    public void testReadLine_lineTerminator_returnsLinesWithoutTerminator(String terminator) throws IOException {
+        // Arrange
+        String input = "first" + terminator + "" + terminator + "third" + terminator;
+        Latin1ByteArrayReader reader = new Latin1ByteArrayReader(input.getBytes(StandardCharsets.ISO_8859_1));
+
+        // Act
+        List<String> lines = readAllLines(reader);
+
+        // Assert
+        assertThat(lines, contains("first", "", "third"));
+    }
+
+    @Test
+    public void testReadLine_missingFinalTerminator_returnsLastLine() throws IOException {
+        // Arrange
+        Latin1ByteArrayReader reader = new Latin1ByteArrayReader(bytes("a\nb"));
+
+        // Act
+        List<String> lines = readAllLines(reader);
+
+        // Assert
+        assertThat(lines, contains("a", "b"));
+    }
+
+    @Test
+    public void testReadLine_empty_returnsNull() throws IOException {
+        // Arrange
+        Latin1ByteArrayReader reader = new Latin1ByteArrayReader(new byte[0]);
+
+        // Act
+        List<String> lines = readAllLines(reader);
+
+        // Assert
+        assertThat(lines, is(emptyIterable()));
+    }
+
+    @Test
+    public void testReadLine_latin1Characters_decodesAllBytes() throws IOException {
+        // Arrange
+        String expected = "K\u00f6ln \u00c4 \u00df \u00ff";
+        Latin1ByteArrayReader reader = new Latin1ByteArrayReader(expected.getBytes(StandardCharsets.ISO_8859_1));
+
+        // Act
+        String result = reader.readLine();
+
+        // Assert
+        assertThat(result, is(equalTo(expected)));
+    }
+
+    @Test
+    public void testRead_mixedWithReadLine_continuesAtSamePosition() throws IOException {
+        // Arrange
+        Latin1ByteArrayReader reader = new Latin1ByteArrayReader(bytes("ab\ncd"));
+
+        // Act
+        int first = reader.read();
+        String line = reader.readLine();
+        char[] buffer = new char[10];
+        int numRead = reader.read(buffer, 2, 8);
+        int afterEnd = reader.read();
+
+        // Assert
+        assertThat(first, is((int) 'a'));
+        assertThat(line, is(equalTo("b")));
+        assertThat(numRead, is(2));
+        assertThat(new String(buffer, 2, numRead), is(equalTo("cd")));
+        assertThat(afterEnd, is(-1));
+    }
+
+    @Test
+    public void testReset_markedBeforeEnd_allowsRereadingAfterEnd() throws IOException {
+        // Arrange
+        Latin1ByteArrayReader reader = new Latin1ByteArrayReader(bytes("a\nb"));
+        reader.readLine();
+        reader.mark(10);
+        reader.readLine();
+        String endOfStream = reader.readLine();
+
+        // Act
+        reader.reset();
+        String result = reader.readLine();
+
+        // Assert
+        assertThat(endOfStream, is(nullValue()));
+        assertThat(result, is(equalTo("b")));
+    }
+
+    @Test
+    public void testReadLine_closed_throwsIOException() throws IOException {
+        // Arrange
+        Latin1ByteArrayReader reader = new Latin1ByteArrayReader(bytes("a"));
+        reader.close();
+
+        thrown.expect(IOException.class);
+
+        // Act
+        reader.readLine();
+
+        // Assert (nothing to do)
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private static List<String> readAllLines(Latin1ByteArrayReader reader) throws IOException {
+        List<String> lines = new ArrayList<>();
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lines.add(line);
+        }
+
+        return lines;
+    }
+}